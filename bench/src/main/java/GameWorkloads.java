@@ -0,0 +1,493 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import bench.Workload;
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.StackPane;
+
+/**
+ * GameWorkloads.java
+ *
+ * Sets up the game for the JMH benchmarks in package {@code bench}, which
+ * cannot reach the default-package game classes themselves (see
+ * {@link Workload}). Each factory builds its data up front and returns the
+ * operation to be timed; the benchmark calls it once per operation.
+ *
+ * Levels are generated from fixed seeds and entities placed with a fixed
+ * random stream, so every run measures the same games.
+ *
+ */
+final class GameWorkloads {
+
+    /** Sprites loaded for the rendering workloads, as in the game. */
+    private static final String[] SPRITES = { "player", "bomb", "shadowling", "charger", "wraith" };
+
+    private GameWorkloads() {
+    }
+
+    /**
+     * Game ticks on a square level. The player is walled into the spawn
+     * corner so the game never ends; enemies are a mix of all three kinds, and
+     * the given number of bombs is dropped on random open cells every tick.
+     *
+     * @param size         the level width and height
+     * @param enemyCount   the number of enemies
+     * @param bombsPerTick the bombs dropped before each tick
+     * @return one tick per run
+     */
+    static Workload tick(int size, int enemyCount, int bombsPerTick) {
+        Level level = new Level(size, size, 42);
+        sealSpawn(level);
+        SplittableRandom rnd = new SplittableRandom(7);
+        List<Enemy> enemies = new ArrayList<>();
+        for (int i = 0; i < enemyCount; i++) {
+            int c = openCell(level, rnd);
+            int x = c % size, y = c / size;
+            switch (i % 4) {
+                case 0: case 1: enemies.add(new Shadowling(x, y)); break;
+                case 2: enemies.add(new Charger(x, y)); break;
+                default: enemies.add(new Wraith(x, y)); break;
+            }
+        }
+        Game game = new Game(level, new Player(1, 1), enemies);
+        GameState state = game.getState();
+        return () -> {
+            for (int b = 0; b < bombsPerTick; b++) {
+                int c = openCell(level, rnd);
+                if (state.getOccupancy().bombAt(c % size, c / size) == null) {
+                    state.addBomb(new Bomb(c % size, c / size));
+                }
+            }
+            game.updateGameLogic();
+            return state.getEnemies().size();
+        };
+    }
+
+    /**
+     * One bomb exploding over and over in the middle of a level with no soft
+     * walls, so every blast covers its full range.
+     *
+     * @param range  the blast range
+     * @param asList whether to use {@link Bomb#explode(Level)}, which returns
+     *               a new list, instead of filling a reused {@link BlastBuffer}
+     * @return one explosion per run
+     */
+    static Workload explode(int range, boolean asList) {
+        Level level = new Level(65, 65, 42);
+        for (int y = 0; y < 65; y++) {
+            for (int x = 0; x < 65; x++) {
+                if (level.getType(x, y) == Tile.Type.SOFT_WALL) level.setTile(x, y, Tile.Type.FLOOR);
+            }
+        }
+        Bomb bomb = new Bomb(31, 31, 6, range);
+        if (asList) return () -> bomb.explode(level).size();
+        BlastBuffer out = new BlastBuffer();
+        return () -> {
+            out.clear();
+            bomb.explode(level, out);
+            return out.size();
+        };
+    }
+
+    /**
+     * Level generation, with a new seed every time.
+     *
+     * @param width  the level width
+     * @param height the level height
+     * @return one generated level per run
+     */
+    static Workload level(int width, int height) {
+        long[] seed = { 0 };
+        return () -> new Level(width, height, seed[0]++).getSeed();
+    }
+
+    /**
+     * Steps back and forth between two open cells of the spawn corner.
+     *
+     * @param enemy whether to move a {@link Shadowling} instead of the player
+     * @return one move per run
+     */
+    static Workload move(boolean enemy) {
+        Level level = new Level(13, 11, 42);
+        Movable mover = enemy ? new Shadowling(1, 1) : new Player(1, 1);
+        Entity entity = (Entity) mover;
+        return () -> {
+            mover.move(entity.getX() == 1 ? 1 : -1, 0, level);
+            return entity.getX();
+        };
+    }
+
+    /**
+     * Writes the state of a game with a few bombs ticking, in memory through
+     * Java serialization.
+     *
+     * @param width      the level width
+     * @param height     the level height
+     * @param enemyCount the number of enemies
+     * @return one serialized state per run
+     */
+    static Workload serialize(int width, int height, int enemyCount) {
+        GameState state = saveGame(width, height, enemyCount).getState();
+        return () -> write(state).length;
+    }
+
+    /**
+     * Reads back the state written by {@link #serialize}.
+     *
+     * @param width      the level width
+     * @param height     the level height
+     * @param enemyCount the number of enemies
+     * @return one deserialized state per run
+     * @throws Exception if the state cannot be written
+     */
+    static Workload deserialize(int width, int height, int enemyCount) throws Exception {
+        byte[] saved = write(saveGame(width, height, enemyCount).getState());
+        return () -> {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(saved))) {
+                return ((GameState) in.readObject()).getTurnCounter();
+            }
+        };
+    }
+
+    /**
+     * Saves a game with a few bombs ticking to a temporary file, through
+     * {@link SaveFile} or through buffered object streams.
+     *
+     * @param width      the level width
+     * @param height     the level height
+     * @param enemyCount the number of enemies
+     * @param binary     whether to use {@link SaveFile}
+     * @return one save per run
+     * @throws Exception if the file cannot be created
+     */
+    static Workload save(int width, int height, int enemyCount, boolean binary) throws Exception {
+        GameState state = saveGame(width, height, enemyCount).getState();
+        Path file = tempFile(".sav");
+        return () -> {
+            writeSave(file, state, binary);
+            return state.getTurnCounter();
+        };
+    }
+
+    /**
+     * Loads back the game saved by {@link #save}.
+     *
+     * @param width      the level width
+     * @param height     the level height
+     * @param enemyCount the number of enemies
+     * @param binary     whether to use {@link SaveFile}
+     * @return one load per run
+     * @throws Exception if the game cannot be saved first
+     */
+    static Workload load(int width, int height, int enemyCount, boolean binary) throws Exception {
+        Path file = tempFile(".sav");
+        writeSave(file, saveGame(width, height, enemyCount).getState(), binary);
+        return () -> readSave(file, binary).getTurnCounter();
+    }
+
+    /**
+     * Verifies replays of games played by the {@link AutoPlayer}, each up to
+     * 1000 turns, one after another.
+     *
+     * @param games           the number of games recorded
+     * @param checkpointEvery the turns between checksums in the recording
+     * @return one replay verified per run
+     */
+    static Workload replay(int games, int checkpointEvery) {
+        List<byte[]> recorded = new ArrayList<>();
+        for (long seed = 0; seed < games; seed++) {
+            Game game = new Game(seed);
+            AutoPlayer bot = new AutoPlayer(game);
+            ReplayRecorder recorder = new ReplayRecorder(seed, checkpointEvery);
+            while (!game.isGameOver() && game.getState().getTurnCounter() < 1_000) {
+                String key = bot.nextInput();
+                if (key != null) {
+                    recorder.input(game.getState().getTurnCounter(), key);
+                    game.processPlayerInput(key);
+                }
+                game.updateGameLogic();
+                recorder.tick(game.getState());
+            }
+            recorded.add(recorder.toByteArray());
+        }
+        int[] next = { 0 };
+        return () -> {
+            ReplayPlayer.Result r = ReplayPlayer.verify(recorded.get(next[0]++ % games));
+            if (!r.isValid()) throw new IllegalStateException("Replay diverged at turn " + r.getMismatchTurn());
+            return r.getGame().getState().getTurnCounter();
+        };
+    }
+
+    /**
+     * A tick of {@link #latencyGame()} the way the simulation loop runs it:
+     * the tick, a snapshot for the renderer, then the autosave every 10
+     * turns, which is off, handed to an {@link Autosaver} or written on the
+     * tick thread. The caller paces the ticks, as the loop sleeps between
+     * them.
+     *
+     * @param autosave {@code "off"}, {@code "background"} or {@code "tickThread"}
+     * @return one tick per run
+     * @throws Exception if the save file cannot be created
+     */
+    static Workload autosavedTick(String autosave) throws Exception {
+        Game game = latencyGame();
+        GameState state = game.getState();
+        Path file = tempFile(".sav");
+        file.resolveSibling(file.getFileName() + ".tmp").toFile().deleteOnExit();
+        Autosaver saver = new Autosaver(file, 10);
+        boolean background = autosave.equals("background");
+        boolean tickThread = autosave.equals("tickThread");
+        if (!background && !tickThread && !autosave.equals("off"))
+            throw new IllegalArgumentException("Unknown autosave mode " + autosave);
+        if (background) saver.start();
+        SplittableRandom rnd = new SplittableRandom(11);
+        return () -> {
+            latencyTick(game, rnd);
+            if (background) {
+                saver.tick(state);
+            } else if (tickThread && state.getTurnCounter() % 10 == 0) {
+                saver.saveNow(state);
+            }
+            return state.getTurnCounter();
+        };
+    }
+
+    /**
+     * Frames drawn by the {@link TileRasterizer} into its pixel array, with
+     * no JavaFX involved. The view covers the whole level, with one enemy per
+     * 32 tiles.
+     *
+     * @param width    the level width, in tiles
+     * @param height   the level height, in tiles
+     * @param tileSize the side of a tile in pixels
+     * @param full     whether every frame repaints the whole view, instead
+     *                 of drawing the next tick and repainting what changed
+     * @return one frame per run
+     * @throws Exception if the sprites cannot be loaded
+     */
+    static Workload raster(int width, int height, int tileSize, boolean full) throws Exception {
+        List<StateSnapshot> frames = frames(width, height);
+        Camera camera = new Camera(width, height, width, height);
+        TileRasterizer raster = new TileRasterizer(width, height, tileSize, SpriteAtlas.load(tileSize, SPRITES));
+        raster.render(frames.get(0), camera);
+        int[] next = { 0 };
+        return () -> {
+            if (full) raster.invalidate();
+            raster.render(full ? frames.get(0) : nextFrame(frames, next), camera);
+            return raster.getDirtyCellCount();
+        };
+    }
+
+    /**
+     * Frames drawn on screen by the game's two views, a {@link CanvasView}
+     * or a {@link PixelBufferView}, as {@link #raster} draws them. Each frame
+     * is drawn on the JavaFX Application Thread and then rendered by JavaFX
+     * into an image with {@link Node#snapshot}, so the time includes playing
+     * back the canvas calls or uploading the pixel buffer, not only issuing
+     * them. The JavaFX toolkit must be able to start, e.g. headless with
+     * Monocle.
+     *
+     * @param width       the level width, in tiles
+     * @param height      the level height, in tiles
+     * @param tileSize    the side of a tile in pixels
+     * @param full        whether every frame repaints the whole view
+     * @param pixelBuffer whether to use the {@link PixelBufferView}
+     * @return one frame per run, including the hand-off to the JavaFX thread
+     * @throws Exception if the sprites cannot be loaded or JavaFX cannot start
+     */
+    static Workload frame(int width, int height, int tileSize, boolean full, boolean pixelBuffer) throws Exception {
+        List<StateSnapshot> frames = frames(width, height);
+        Camera camera = new Camera(width, height, width, height);
+        SpriteAtlas atlas = SpriteAtlas.load(tileSize, SPRITES);
+        try {
+            Platform.startup(() -> { });
+        } catch (IllegalStateException alreadyStarted) {
+            // Started by an earlier workload in this JVM
+        }
+        return onFxThread(() -> {
+            PixelBufferView pixels = pixelBuffer ? new PixelBufferView(width, height, tileSize, atlas) : null;
+            CanvasView canvas = pixelBuffer ? null : new CanvasView(width, height, tileSize, atlas);
+            Node node = pixelBuffer ? pixels.getNode() : canvas.getNode();
+            new Scene(new StackPane(node));
+            WritableImage image = new WritableImage(width * tileSize, height * tileSize);
+            int[] next = { 0 };
+            Callable<Long> draw = () -> {
+                StateSnapshot frame = full ? frames.get(0) : nextFrame(frames, next);
+                if (pixelBuffer) {
+                    if (full) pixels.invalidate();
+                    pixels.render(frame, camera);
+                } else {
+                    if (full) canvas.invalidate();
+                    canvas.render(frame, camera);
+                }
+                node.snapshot(null, image);
+                return (long) frame.getTurn();
+            };
+            draw.call();
+            return (Workload) () -> onFxThread(draw);
+        });
+    }
+
+    // ---------------- Helpers ----------------
+
+    /**
+     * @return snapshots of 50 ticks of a game on a width x height level, with
+     *         one enemy per 32 tiles and a bomb dropped every 5 ticks
+     */
+    static List<StateSnapshot> frames(int width, int height) {
+        Level level = new Level(width, height, 42);
+        sealSpawn(level);
+        SplittableRandom rnd = new SplittableRandom(7);
+        List<Enemy> enemies = new ArrayList<>();
+        for (int i = 0; i < width * height / 32; i++) {
+            int c = openCell(level, rnd);
+            enemies.add(i % 2 == 0 ? new Shadowling(c % width, c / width) : new Charger(c % width, c / width));
+        }
+        Game game = new Game(level, new Player(1, 1), enemies);
+        GameState state = game.getState();
+        List<StateSnapshot> frames = new ArrayList<>();
+        for (int t = 0; t < 50; t++) {
+            if (t % 5 == 0) {
+                int c = openCell(level, rnd);
+                state.addBomb(new Bomb(c % width, c / width));
+            }
+            game.updateGameLogic();
+            frames.add(state.snapshot());
+        }
+        return frames;
+    }
+
+    /**
+     * Steps through the frames forwards, then backwards, and so on, so that
+     * every frame is one tick away from the one drawn before it.
+     */
+    private static StateSnapshot nextFrame(List<StateSnapshot> frames, int[] next) {
+        int period = 2 * frames.size() - 2;
+        int i = next[0]++ % period;
+        return frames.get(i < frames.size() ? i : period - i);
+    }
+
+    /** Runs a task on the JavaFX Application Thread and waits for its result. */
+    private static <T> T onFxThread(Callable<T> task) throws Exception {
+        FutureTask<T> future = new FutureTask<>(task);
+        Platform.runLater(future);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * @return a 1024x1024 game with 4096 Shadowlings and Chargers and the
+     *         player walled in, about 1 ms a tick
+     */
+    static Game latencyGame() {
+        int size = 1024;
+        Level level = new Level(size, size, 42);
+        sealSpawn(level);
+        SplittableRandom rnd = new SplittableRandom(7);
+        List<Enemy> enemies = new ArrayList<>();
+        for (int i = 0; i < 4096; i++) {
+            int c = openCell(level, rnd);
+            enemies.add(i % 2 == 0 ? new Shadowling(c % size, c / size) : new Charger(c % size, c / size));
+        }
+        return new Game(level, new Player(1, 1), enemies);
+    }
+
+    /**
+     * Runs one tick of a {@link #latencyGame()}, dropping a bomb every 5
+     * turns, and takes a snapshot for the renderer.
+     */
+    static void latencyTick(Game game, SplittableRandom rnd) {
+        GameState state = game.getState();
+        Level level = state.getLevel();
+        if (state.getTurnCounter() % 5 == 0) {
+            int c = openCell(level, rnd);
+            state.addBomb(new Bomb(c % level.getWidth(), c / level.getWidth()));
+        }
+        game.updateGameLogic();
+        state.snapshot();
+    }
+
+    /** @return a game with Shadowlings and Wraiths on open cells and three bombs ticking */
+    static Game saveGame(int width, int height, int enemyCount) {
+        Level level = new Level(width, height, 42);
+        SplittableRandom rnd = new SplittableRandom(7);
+        List<Enemy> enemies = new ArrayList<>();
+        for (int i = 0; i < enemyCount; i++) {
+            int c = openCell(level, rnd);
+            enemies.add(i % 2 == 0 ? new Shadowling(c % width, c / width) : new Wraith(c % width, c / width));
+        }
+        Game game = new Game(level, new Player(1, 1), enemies);
+        for (int b = 0; b < 3; b++) {
+            int c = openCell(level, rnd);
+            game.getState().addBomb(new Bomb(c % width, c / width));
+        }
+        return game;
+    }
+
+    private static byte[] write(GameState state) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(state);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeSave(Path file, GameState state, boolean binary) throws Exception {
+        if (binary) {
+            SaveFile.write(file, state);
+            return;
+        }
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeObject(state);
+        }
+    }
+
+    private static GameState readSave(Path file, boolean binary) throws Exception {
+        if (binary) return SaveFile.read(file);
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return (GameState) in.readObject();
+        }
+    }
+
+    /** @return a new temporary file, deleted when the benchmark JVM exits */
+    static Path tempFile(String suffix) throws Exception {
+        Path file = Files.createTempFile("bench", suffix);
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    /** Walls in the open 2x2 spawn corner so nothing can reach the player. */
+    static void sealSpawn(Level level) {
+        level.setTile(3, 1, Tile.Type.HARD_WALL);
+        level.setTile(3, 2, Tile.Type.HARD_WALL);
+        level.setTile(1, 3, Tile.Type.HARD_WALL);
+        level.setTile(2, 3, Tile.Type.HARD_WALL);
+    }
+
+    /** @return a random walkable cell outside the spawn corner, as y * width + x */
+    static int openCell(Level level, SplittableRandom rnd) {
+        int w = level.getWidth(), h = level.getHeight();
+        while (true) {
+            int x = rnd.nextInt(w), y = rnd.nextInt(h);
+            if (x + y > 6 && level.isWalkable(x, y)) return y * w + x;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ExplodeBenchmark.java
+ *
+ * {@code Bomb.explode} at several ranges, on open floor so every blast
+ * covers its full range: into a reused {@code BlastBuffer}, and as a new
+ * list of cells.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExplodeBenchmark {
+
+    @Param({ "1", "2", "4", "8", "16" })
+    int range;
+
+    private Workload buffer;
+    private Workload list;
+
+    @Setup
+    public void setUp() throws Exception {
+        buffer = Workloads.create("explode", range, false);
+        list = Workloads.create("explode", range, true);
+    }
+
+    @Benchmark
+    public long explodeIntoBuffer() throws Exception {
+        return buffer.run();
+    }
+
+    @Benchmark
+    public long explodeToList() throws Exception {
+        return list.run();
+    }
+}
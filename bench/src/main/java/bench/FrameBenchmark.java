@@ -0,0 +1,58 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * FrameBenchmark.java
+ *
+ * The game's two render modes compared on screen: frames drawn by the
+ * {@code CanvasView} with canvas calls against frames rasterized by the
+ * {@code PixelBufferView}, each rendered by JavaFX before the time is
+ * taken. The forked JVM runs JavaFX headless, on Monocle with the software
+ * pipeline, so it needs no display; Monocle 21 needs JDK 21.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Dglass.platform=Monocle", "-Dmonocle.platform=Headless", "-Dprism.order=sw" })
+public class FrameBenchmark {
+
+    /** Level width x height in tiles @ tile size in pixels. */
+    @Param({ "13x11@40", "128x128@8", "512x512@8" })
+    String view;
+
+    @Param({ "Canvas", "PixelBuffer" })
+    String renderer;
+
+    @Param({ "perTick", "full" })
+    String repaint;
+
+    private Workload frame;
+
+    @Setup
+    public void setUp() throws Exception {
+        String[] parts = view.split("[x@]");
+        frame = Workloads.create("frame", Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                Integer.parseInt(parts[2]), repaint.equals("full"), renderer.equals("PixelBuffer"));
+    }
+
+    @Benchmark
+    public long frame() throws Exception {
+        return frame.run();
+    }
+}
@@ -0,0 +1,47 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * LevelBenchmark.java
+ *
+ * {@code Level} construction, which generates the whole map, at several
+ * sizes. Every level gets a new seed.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevelBenchmark {
+
+    @Param({ "13x11", "256x256", "2048x2048" })
+    String size;
+
+    private Workload level;
+
+    @Setup
+    public void setUp() throws Exception {
+        String[] wh = size.split("x");
+        level = Workloads.create("level", Integer.parseInt(wh[0]), Integer.parseInt(wh[1]));
+    }
+
+    @Benchmark
+    public long generate() throws Exception {
+        return level.run();
+    }
+}
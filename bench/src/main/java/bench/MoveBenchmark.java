@@ -0,0 +1,49 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MoveBenchmark.java
+ *
+ * {@code Player.move} and {@code Enemy.move}, stepping back and forth
+ * between two open cells.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveBenchmark {
+
+    private Workload player;
+    private Workload enemy;
+
+    @Setup
+    public void setUp() throws Exception {
+        player = Workloads.create("move", false);
+        enemy = Workloads.create("move", true);
+    }
+
+    @Benchmark
+    public long movePlayer() throws Exception {
+        return player.run();
+    }
+
+    @Benchmark
+    public long moveEnemy() throws Exception {
+        return enemy.run();
+    }
+}
@@ -0,0 +1,54 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * RasterBenchmark.java
+ *
+ * {@code TileRasterizer} frames of a whole level, into its pixel array with
+ * no JavaFX involved: full repaints, and frames of successive ticks that
+ * repaint only what changed. {@link FrameBenchmark} times the same frames
+ * on screen.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RasterBenchmark {
+
+    /** Level width x height in tiles @ tile size in pixels. */
+    @Param({ "13x11@40", "128x128@8", "512x512@8" })
+    String view;
+
+    @Param({ "perTick", "full" })
+    String repaint;
+
+    private Workload frame;
+
+    @Setup
+    public void setUp() throws Exception {
+        String[] parts = view.split("[x@]");
+        frame = Workloads.create("raster", Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                Integer.parseInt(parts[2]), repaint.equals("full"));
+    }
+
+    @Benchmark
+    public long frame() throws Exception {
+        return frame.run();
+    }
+}
@@ -0,0 +1,49 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ReplayBenchmark.java
+ *
+ * {@code ReplayPlayer.verify} on recordings of {@link #GAMES} games played
+ * by the {@code AutoPlayer}, taken in turn, with a checksum every turn and
+ * every ten turns.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplayBenchmark {
+
+    static final int GAMES = 100;
+
+    @Param({ "1", "10" })
+    int checkpointEvery;
+
+    private Workload verify;
+
+    @Setup
+    public void setUp() throws Exception {
+        verify = Workloads.create("replay", GAMES, checkpointEvery);
+    }
+
+    @Benchmark
+    public long verify() throws Exception {
+        return verify.run();
+    }
+}
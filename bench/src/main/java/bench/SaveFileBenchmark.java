@@ -0,0 +1,61 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SaveFileBenchmark.java
+ *
+ * Saving a game to a file and loading it back, through {@code SaveFile}
+ * and, for comparison, through buffered Java object streams.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SaveFileBenchmark {
+
+    /** Level width x height / enemy count. */
+    @Param({ "13x11/4", "1024x1024/4096" })
+    String game;
+
+    @Param({ "SaveFile", "ObjectStream" })
+    String format;
+
+    private Workload save;
+    private Workload load;
+
+    @Setup
+    public void setUp() throws Exception {
+        String[] parts = game.split("[x/]");
+        int width = Integer.parseInt(parts[0]), height = Integer.parseInt(parts[1]);
+        int enemies = Integer.parseInt(parts[2]);
+        boolean binary = format.equals("SaveFile");
+        save = Workloads.create("save", width, height, enemies, binary);
+        load = Workloads.create("load", width, height, enemies, binary);
+    }
+
+    @Benchmark
+    public long save() throws Exception {
+        return save.run();
+    }
+
+    @Benchmark
+    public long load() throws Exception {
+        return load.run();
+    }
+}
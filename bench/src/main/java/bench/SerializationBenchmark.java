@@ -0,0 +1,57 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SerializationBenchmark.java
+ *
+ * {@code GameState} written and read back in memory through Java
+ * serialization, for games of several sizes with three bombs ticking.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    /** Level width x height / enemy count. */
+    @Param({ "13x11/4", "63x63/64", "1024x1024/4096" })
+    String game;
+
+    private Workload serialize;
+    private Workload deserialize;
+
+    @Setup
+    public void setUp() throws Exception {
+        String[] parts = game.split("[x/]");
+        int width = Integer.parseInt(parts[0]), height = Integer.parseInt(parts[1]);
+        int enemies = Integer.parseInt(parts[2]);
+        serialize = Workloads.create("serialize", width, height, enemies);
+        deserialize = Workloads.create("deserialize", width, height, enemies);
+    }
+
+    @Benchmark
+    public long serialize() throws Exception {
+        return serialize.run();
+    }
+
+    @Benchmark
+    public long deserialize() throws Exception {
+        return deserialize.run();
+    }
+}
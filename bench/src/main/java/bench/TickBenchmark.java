@@ -0,0 +1,57 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * TickBenchmark.java
+ *
+ * {@code Game.updateGameLogic()} on a 63x63 level at several enemy counts
+ * and bomb rates.
+ *
+ * Ticks change the game (enemies die, walls burn), so each iteration runs a
+ * batch of {@link #TICKS} ticks on a freshly set up game rather than ticking
+ * one game for as long as it takes; the score is the time per batch.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20, batchSize = TickBenchmark.TICKS)
+@Measurement(iterations = 40, batchSize = TickBenchmark.TICKS)
+@Fork(1)
+public class TickBenchmark {
+
+    /** Ticks per iteration, each on the game as the last one left it. */
+    static final int TICKS = 200;
+
+    @Param({ "4", "64", "1024" })
+    int enemies;
+
+    @Param({ "0", "4" })
+    int bombsPerTick;
+
+    private Workload tick;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        tick = Workloads.create("tick", 63, enemies, bombsPerTick);
+    }
+
+    @Benchmark
+    public long tick() throws Exception {
+        return tick.run();
+    }
+}
@@ -0,0 +1,60 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * TickLatencyBenchmark.java
+ *
+ * Single ticks of a 1024x1024 game with 4096 enemies, with the autosave
+ * every 10 turns off, in the background {@code Autosaver} or written on the
+ * tick thread. Saving shows up as rare slow ticks rather than in the mean,
+ * so every tick is timed and JMH reports the percentiles. Ticks are paced
+ * {@link #PACE_NANOS} apart outside the timed region, as the simulation
+ * loop sleeps between them.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 4, time = 5)
+@Fork(1)
+public class TickLatencyBenchmark {
+
+    /** Idle time between ticks. */
+    private static final long PACE_NANOS = 5_000_000;
+
+    @Param({ "off", "background", "tickThread" })
+    String autosave;
+
+    private Workload tick;
+
+    @Setup
+    public void setUp() throws Exception {
+        tick = Workloads.create("autosavedTick", autosave);
+    }
+
+    @Setup(Level.Invocation)
+    public void pace() {
+        LockSupport.parkNanos(PACE_NANOS);
+    }
+
+    @Benchmark
+    public long tick() throws Exception {
+        return tick.run();
+    }
+}
@@ -0,0 +1,24 @@
+package bench;
+
+/**
+ * Workload.java
+ *
+ * One operation on the game, set up and ready to be timed.
+ *
+ * JMH only runs benchmarks in a named package, and the game classes are in
+ * the default package, which a named package cannot import. So the set-up
+ * and the operation itself live in {@code GameWorkloads}, in the default
+ * package, and the benchmarks call them through this interface. Each
+ * benchmark makes one call per operation, which the JIT inlines.
+ *
+ */
+public interface Workload {
+
+    /**
+     * Runs the operation once.
+     *
+     * @return a value derived from the result, for the benchmark to consume
+     * @throws Exception if the operation fails
+     */
+    long run() throws Exception;
+}
@@ -0,0 +1,41 @@
+package bench;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Workloads.java
+ *
+ * Creates {@link Workload}s with the factory methods of the default-package
+ * class {@code GameWorkloads}, found by name.
+ *
+ */
+public final class Workloads {
+
+    private static final String FACTORY_CLASS = "GameWorkloads";
+
+    private Workloads() {
+    }
+
+    /**
+     * Calls a factory method of {@code GameWorkloads}.
+     *
+     * @param factory the name of the static factory method
+     * @param args    its arguments; primitives are unboxed to match
+     * @return the workload it sets up
+     * @throws Exception if there is no such factory or it fails
+     */
+    public static Workload create(String factory, Object... args) throws Exception {
+        for (Method m : Class.forName(FACTORY_CLASS).getDeclaredMethods()) {
+            if (m.getName().equals(factory) && m.getParameterCount() == args.length) {
+                m.setAccessible(true);
+                try {
+                    return (Workload) m.invoke(null, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+        throw new NoSuchMethodException(FACTORY_CLASS + "." + factory + " with " + args.length + " arguments");
+    }
+}
@@ -0,0 +1,98 @@
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * AutosaverTest.java
+ *
+ * Checks that autosaving in the background leaves the slow ticks of a
+ * game about as slow as they are without it: the 99th percentile tick time
+ * with a save every 10 turns stays within {@link #MAX_P99_RATIO} of the one
+ * with autosave off.
+ *
+ * Ticks of {@link GameWorkloads#latencyGame()}, about 1 ms each, are paced
+ * 5 ms apart as in the simulation loop. Autosave is switched on and off in
+ * alternate blocks of ticks, so that whatever else the machine is doing
+ * slows both sides alike. Even so, a p99 of a thousand ticks is set by ten
+ * of them, and a few stalls of the machine landing on one side can move it
+ * by a third, so the ratio is measured in {@link #TRIALS} trials and the
+ * median is checked.
+ *
+ * Tagged {@code perf}: it times about 45 seconds of ticks and needs a quiet
+ * machine, so it only runs with {@code mvn test -Pperf}.
+ *
+ */
+@Tag("perf")
+class AutosaverTest {
+
+    /** Bound on p99 with autosave over p99 without it. */
+    private static final double MAX_P99_RATIO = 1.3;
+
+    private static final int TRIALS = 3;
+    private static final int BLOCKS = 80;
+    private static final int BLOCK_TICKS = 25;
+    private static final int WARMUP_BLOCKS = 40;
+    private static final long PACE_NANOS = 5_000_000;
+
+    @Test
+    void backgroundSavesKeepTickP99(@TempDir Path dir) throws Exception {
+        Game game = GameWorkloads.latencyGame();
+        GameState state = game.getState();
+        SplittableRandom rnd = new SplittableRandom(11);
+        Autosaver saver = new Autosaver(dir.resolve("auto.sav"), 10);
+        saver.start();
+
+        run(game, state, rnd, saver, WARMUP_BLOCKS, null, null);
+        double[] ratios = new double[TRIALS];
+        long[] off = new long[BLOCKS / 2 * BLOCK_TICKS];
+        long[] on = new long[off.length];
+        for (int i = 0; i < TRIALS; i++) {
+            run(game, state, rnd, saver, BLOCKS, off, on);
+            ratios[i] = p99(on) / p99(off);
+        }
+        saver.stop();
+        saver.join();
+
+        assertTrue(saver.getSaveCount() >= TRIALS * BLOCKS / 2, "only " + saver.getSaveCount() + " saves written");
+        double[] sorted = ratios.clone();
+        Arrays.sort(sorted);
+        assertTrue(sorted[TRIALS / 2] <= MAX_P99_RATIO,
+                "p99 tick with autosave over p99 without, per trial: " + Arrays.toString(ratios));
+    }
+
+    /**
+     * Runs blocks of paced ticks, saving in every other block, and records
+     * the tick times if asked to.
+     */
+    private static void run(Game game, GameState state, SplittableRandom rnd, Autosaver saver,
+            int blocks, long[] off, long[] on) {
+        int offCount = 0, onCount = 0;
+        for (int b = 0; b < blocks; b++) {
+            boolean saving = (b & 1) == 1;
+            for (int t = 0; t < BLOCK_TICKS; t++) {
+                long start = System.nanoTime();
+                GameWorkloads.latencyTick(game, rnd);
+                if (saving) saver.tick(state);
+                long time = System.nanoTime() - start;
+                if (on != null) {
+                    if (saving) on[onCount++] = time;
+                    else off[offCount++] = time;
+                }
+                LockSupport.parkNanos(PACE_NANOS);
+            }
+        }
+    }
+
+    private static double p99(long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length * 99 / 100];
+    }
+}
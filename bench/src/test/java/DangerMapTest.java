@@ -0,0 +1,162 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * DangerMapTest.java
+ *
+ * Checks the incremental {@link DangerMap} against brute force after random
+ * bomb placements, fuses running out with their chain reactions, and wall
+ * changes. The brute force explodes every live bomb on a copy of the level
+ * with {@link Bomb#explode(Level, BlastBuffer)}, passes the earliest blast
+ * turn along every blast that reaches another bomb until nothing changes,
+ * and takes each cell's earliest blast.
+ *
+ */
+class DangerMapTest {
+
+    private static final Tile.Type[] EDITS = { Tile.Type.FLOOR, Tile.Type.SOFT_WALL, Tile.Type.HARD_WALL };
+
+    @Test
+    void matchesBruteForceAfterRandomChanges() {
+        SplittableRandom rnd = new SplittableRandom(3);
+        for (int round = 0; round < 150; round++) {
+            int width = 7 + rnd.nextInt(20), height = 7 + rnd.nextInt(20);
+            Level level = new Level(width, height, rnd.nextLong());
+            GameState state = new GameState(level, new Player(1, 1), new ArrayList<>(), new ArrayList<>(), 0);
+            for (int step = 0; step < 60; step++) {
+                switch (rnd.nextInt(4)) {
+                    case 0:
+                    case 1:
+                        placeBomb(state, rnd);
+                        break;
+                    case 2:
+                        editWall(state, rnd);
+                        break;
+                    default:
+                        tick(state);
+                        break;
+                }
+                assertMatchesBruteForce(state, "round " + round + " step " + step);
+            }
+        }
+    }
+
+    /** Places a bomb with a random fuse and range on a random free floor cell. */
+    private static void placeBomb(GameState state, SplittableRandom rnd) {
+        Level level = state.getLevel();
+        for (int tries = 0; tries < 20; tries++) {
+            int x = rnd.nextInt(level.getWidth()), y = rnd.nextInt(level.getHeight());
+            if (level.isWalkable(x, y) && state.getOccupancy().bombAt(x, y) == null) {
+                state.addBomb(new Bomb(x, y, 1 + rnd.nextInt(8), 1 + rnd.nextInt(4)));
+                return;
+            }
+        }
+    }
+
+    /** Changes a random inner tile that holds no bomb, as a blast or an editor would. */
+    private static void editWall(GameState state, SplittableRandom rnd) {
+        Level level = state.getLevel();
+        int x = 1 + rnd.nextInt(level.getWidth() - 2), y = 1 + rnd.nextInt(level.getHeight() - 2);
+        if (state.getOccupancy().bombAt(x, y) == null) level.setTile(x, y, EDITS[rnd.nextInt(EDITS.length)]);
+    }
+
+    /** Runs the bomb part of a game tick: due fuses go off, with their chains, the way {@link Game} does it. */
+    private static void tick(GameState state) {
+        Level level = state.getLevel();
+        List<Bomb> due = new ArrayList<>();
+        state.getFuses().advance(state.getTurnCounter(), due);
+        ArrayDeque<Bomb> cascade = new ArrayDeque<>();
+        for (Bomb b : due) {
+            if (!b.isDetonated()) {
+                b.trigger();
+                cascade.add(b);
+            }
+        }
+        BlastBuffer blast = new BlastBuffer();
+        while (!cascade.isEmpty()) {
+            Bomb b = cascade.poll();
+            blast.clear();
+            b.explode(level, blast);
+            for (int i = 0; i < blast.size(); i++) {
+                Bomb hit = state.getOccupancy().bombAt(blast.x(i), blast.y(i));
+                if (hit != null && !hit.isDetonated()) {
+                    hit.trigger();
+                    cascade.add(hit);
+                }
+            }
+        }
+        state.removeExplodedBombs();
+        state.incrementTurn();
+    }
+
+    private static void assertMatchesBruteForce(GameState state, String where) {
+        Level level = state.getLevel();
+        int width = level.getWidth(), height = level.getHeight();
+        List<Bomb> bombs = state.getBombs();
+
+        // The cells each bomb's blast would reach with the walls as they are now
+        List<BlastBuffer> blasts = new ArrayList<>();
+        for (Bomb b : bombs) {
+            BlastBuffer cells = new BlastBuffer();
+            b.explode(copy(level), cells);
+            blasts.add(cells);
+        }
+
+        // Pass each bomb's blast turn to the bombs its blast reaches
+        int[] turn = new int[bombs.size()];
+        for (int i = 0; i < turn.length; i++) turn[i] = bombs.get(i).getDueTurn();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < turn.length; i++) {
+                BlastBuffer cells = blasts.get(i);
+                for (int c = 0; c < cells.size(); c++) {
+                    Bomb hit = state.getOccupancy().bombAt(cells.x(c), cells.y(c));
+                    if (hit == null) continue;
+                    int j = bombs.indexOf(hit);
+                    if (turn[j] > turn[i]) {
+                        turn[j] = turn[i];
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        int[] expected = new int[width * height];
+        Arrays.fill(expected, DangerMap.SAFE);
+        for (int i = 0; i < turn.length; i++) {
+            BlastBuffer cells = blasts.get(i);
+            for (int c = 0; c < cells.size(); c++) {
+                int cell = cells.y(c) * width + cells.x(c);
+                expected[cell] = Math.min(expected[cell], turn[i]);
+            }
+        }
+
+        DangerMap danger = state.getDanger();
+        int dangerous = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(expected[y * width + x], danger.getBlastTurn(x, y),
+                        "blast turn of (" + x + ", " + y + ") at " + where);
+                if (expected[y * width + x] != DangerMap.SAFE) dangerous++;
+            }
+        }
+        assertEquals(dangerous, danger.getDangerousCellCount(), "dangerous cells at " + where);
+    }
+
+    /** Copies a level's tiles, so exploding a bomb on it leaves the real walls alone. */
+    private static Level copy(Level level) {
+        Level copy = new Level(level.getWidth(), level.getHeight());
+        for (int y = 0; y < level.getHeight(); y++) {
+            for (int x = 0; x < level.getWidth(); x++) copy.setTile(x, y, level.getType(x, y));
+        }
+        return copy;
+    }
+}
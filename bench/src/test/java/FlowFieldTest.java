@@ -0,0 +1,74 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * FlowFieldTest.java
+ *
+ * Checks that {@link FlowField#update} leaves the same distances as a full
+ * {@link FlowField#compute} after random tile changes, repaired in place,
+ * and after target moves, which fall back to a full search.
+ *
+ */
+class FlowFieldTest {
+
+    private static final Tile.Type[] EDITS = { Tile.Type.FLOOR, Tile.Type.SOFT_WALL, Tile.Type.HARD_WALL };
+
+    @Test
+    void repairMatchesFullSearchAfterRandomEdits() {
+        SplittableRandom rnd = new SplittableRandom(1);
+        for (int round = 0; round < 300; round++) {
+            int width = 5 + rnd.nextInt(40), height = 5 + rnd.nextInt(40);
+            Level level = new Level(width, height, rnd.nextLong());
+            FlowField field = new FlowField(level);
+            int tx = 1, ty = 1;
+            field.update(tx, ty);
+            for (int step = 0; step < 20; step++) {
+                // A batch of changes between two updates, like one tick's blasts
+                int edits = 1 + rnd.nextInt(rnd.nextBoolean() ? 3 : 40);
+                for (int i = 0; i < edits; i++) {
+                    int x = 1 + rnd.nextInt(width - 2), y = 1 + rnd.nextInt(height - 2);
+                    if (x != tx || y != ty) level.setTile(x, y, EDITS[rnd.nextInt(EDITS.length)]);
+                }
+                field.update(tx, ty);
+                assertMatchesFullSearch(level, field, tx, ty, "round " + round + " step " + step);
+            }
+            field.detach();
+        }
+    }
+
+    @Test
+    void updateMatchesFullSearchAfterTargetMoves() {
+        SplittableRandom rnd = new SplittableRandom(2);
+        Level level = new Level(31, 25, 9);
+        FlowField field = new FlowField(level);
+        int tx = 1, ty = 1;
+        field.update(tx, ty);
+        for (int step = 0; step < 500; step++) {
+            int dir = rnd.nextInt(4);
+            int nx = tx + FlowField.dx(dir), ny = ty + FlowField.dy(dir);
+            if (level.isWalkable(nx, ny)) {
+                tx = nx;
+                ty = ny;
+            }
+            if (rnd.nextInt(4) == 0) level.destroyTile(1 + rnd.nextInt(29), 1 + rnd.nextInt(23));
+            field.update(tx, ty);
+            assertMatchesFullSearch(level, field, tx, ty, "step " + step);
+        }
+        field.detach();
+    }
+
+    private static void assertMatchesFullSearch(Level level, FlowField field, int tx, int ty, String where) {
+        FlowField full = new FlowField(level);
+        full.compute(tx, ty);
+        for (int y = 0; y < level.getHeight(); y++) {
+            for (int x = 0; x < level.getWidth(); x++) {
+                assertEquals(full.distance(x, y), field.distance(x, y),
+                        "distance of (" + x + ", " + y + ") at " + where);
+            }
+        }
+        full.detach();
+    }
+}
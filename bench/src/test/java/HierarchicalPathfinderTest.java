@@ -0,0 +1,115 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * HierarchicalPathfinderTest.java
+ *
+ * Checks {@link HierarchicalPathfinder} against a breadth-first search over
+ * the whole level, on random levels spanning several clusters and after
+ * random tile edits, half of them on cluster borders, which rebuild the
+ * clusters around them. Every path found is walked step by step: each step
+ * must land on a walkable cell, the walk must end on the goal after {@link
+ * HierarchicalPathfinder.Path#length()} steps, and that length may exceed
+ * the shortest by at most the 1.25 weight on the search's distance estimate.
+ * Where the search finds no path, the goal must be out of reach.
+ *
+ */
+class HierarchicalPathfinderTest {
+
+    private static final Tile.Type[] EDITS = { Tile.Type.FLOOR, Tile.Type.SOFT_WALL, Tile.Type.HARD_WALL };
+
+    /** Bound on path length over shortest: the search's heuristic weight, 5/4. */
+    private static final double MAX_STRETCH = 1.25;
+
+    @Test
+    void pathsMatchFullSearchAfterRandomEdits() {
+        SplittableRandom rnd = new SplittableRandom(4);
+        for (int round = 0; round < 40; round++) {
+            int width = 10 + rnd.nextInt(70), height = 10 + rnd.nextInt(70);
+            Level level = new Level(width, height, rnd.nextLong());
+            HierarchicalPathfinder finder = new HierarchicalPathfinder(level);
+            for (int step = 0; step < 30; step++) {
+                int edits = rnd.nextInt(rnd.nextBoolean() ? 3 : 30);
+                for (int i = 0; i < edits; i++) {
+                    int x = 1 + rnd.nextInt(width - 2), y = 1 + rnd.nextInt(height - 2);
+                    if (rnd.nextBoolean()) {
+                        // Half the edits go on a cluster border, where they change the neighbour's entrances too
+                        if (rnd.nextBoolean()) x = onBorder(x, width, rnd);
+                        else y = onBorder(y, height, rnd);
+                    }
+                    level.setTile(x, y, EDITS[rnd.nextInt(EDITS.length)]);
+                }
+                for (int q = 0; q < 10; q++) {
+                    int sx = rnd.nextInt(width), sy = rnd.nextInt(height);
+                    int gx = rnd.nextInt(width), gy = rnd.nextInt(height);
+                    assertPathValid(level, finder, sx, sy, gx, gy,
+                            "round " + round + " step " + step + ": (" + sx + ", " + sy + ") to (" + gx + ", " + gy + ")");
+                }
+            }
+            finder.detach();
+        }
+    }
+
+    /** @return the first or last inner coordinate of the cluster holding {@code v} */
+    private static int onBorder(int v, int size, SplittableRandom rnd) {
+        int cluster = HierarchicalPathfinder.CLUSTER_SIZE;
+        int border = v / cluster * cluster + (rnd.nextBoolean() ? 0 : cluster - 1);
+        return Math.max(1, Math.min(size - 2, border));
+    }
+
+    private static void assertPathValid(Level level, HierarchicalPathfinder finder,
+            int sx, int sy, int gx, int gy, String where) {
+        HierarchicalPathfinder.Path path = finder.findPath(sx, sy, gx, gy);
+        int shortest = level.isWalkable(sx, sy) ? distances(level, sx, sy)[gy * level.getWidth() + gx] : -1;
+        if (shortest < 0 || !level.isWalkable(gx, gy)) {
+            assertNull(path, "path to an unreachable goal, " + where);
+            return;
+        }
+        assertNotNull(path, "no path to a reachable goal, " + where);
+
+        int x = sx, y = sy, steps = 0;
+        for (int d = path.nextStep(); d >= 0; d = path.nextStep()) {
+            x += FlowField.dx(d);
+            y += FlowField.dy(d);
+            steps++;
+            assertTrue(level.isWalkable(x, y), "step " + steps + " onto a blocked cell, " + where);
+            assertTrue(steps <= path.length(), "walk longer than the path, " + where);
+        }
+        assertEquals(gx + ", " + gy, x + ", " + y, "walk does not end on the goal, " + where);
+        assertEquals(path.length(), steps, "steps walked, " + where);
+        assertTrue(steps <= shortest * MAX_STRETCH,
+                "path of " + steps + " steps where the shortest is " + shortest + ", " + where);
+    }
+
+    /** @return the steps from (sx, sy) to every cell, row-major, or -1 where it cannot be reached */
+    private static int[] distances(Level level, int sx, int sy) {
+        int w = level.getWidth(), h = level.getHeight();
+        int[] dist = new int[w * h];
+        int[] queue = new int[w * h];
+        Arrays.fill(dist, -1);
+        int head = 0, tail = 0;
+        dist[sy * w + sx] = 0;
+        queue[tail++] = sy * w + sx;
+        while (head < tail) {
+            int c = queue[head++];
+            int x = c % w, y = c / w;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + FlowField.dx(d), ny = y + FlowField.dy(d);
+                if (nx < 0 || ny < 0 || nx >= w || ny >= h || !level.isWalkable(nx, ny)) continue;
+                int n = ny * w + nx;
+                if (dist[n] < 0) {
+                    dist[n] = dist[c] + 1;
+                    queue[tail++] = n;
+                }
+            }
+        }
+        return dist;
+    }
+}
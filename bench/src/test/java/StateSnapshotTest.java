@@ -0,0 +1,159 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * StateSnapshotTest.java
+ *
+ * Checks the {@link EntityGrid}s of successive {@link StateSnapshot}s, which
+ * are updated from the {@link OccupancyIndex} change log, against the live
+ * enemies and bombs after random moves, deaths, new bombs and detonations.
+ * Ids freed and handed out again between two snapshots are covered too.
+ * Snapshots taken earlier in each game are checked again at its end, since
+ * later snapshots share their buckets and must not change them.
+ *
+ */
+class StateSnapshotTest {
+
+    @Test
+    void gridsMatchLiveEntitiesAfterRandomChanges() {
+        SplittableRandom rnd = new SplittableRandom(5);
+        for (int round = 0; round < 100; round++) {
+            int width = 10 + rnd.nextInt(150), height = 10 + rnd.nextInt(150);
+            Level level = new Level(width, height, rnd.nextLong());
+            List<Enemy> enemies = new ArrayList<>();
+            for (int i = rnd.nextInt(300); i > 0; i--) {
+                enemies.add(new Shadowling(rnd.nextInt(width), rnd.nextInt(height)));
+            }
+            GameState state = new GameState(level, new Player(1, 1), enemies, new ArrayList<>(), 0);
+
+            List<StateSnapshot> kept = new ArrayList<>();
+            List<long[][]> keptContents = new ArrayList<>();
+            for (int step = 0; step < 40; step++) {
+                for (int i = rnd.nextInt(rnd.nextBoolean() ? 3 : 60); i > 0; i--) change(state, rnd);
+                boolean save = rnd.nextInt(4) == 0;
+                StateSnapshot snap = save ? state.snapshotForSave() : state.snapshot();
+                String where = "round " + round + " step " + step;
+                long[][] live = { encode(state.getEnemies()), encode(state.getBombs()) };
+                assertGridsMatch(snap, live, width, height, rnd, where);
+                if (save) {
+                    assertArrayEquals(codes(freeze(state.getEnemies())), codes(snap.getEnemies()), "enemy list at " + where);
+                    assertArrayEquals(codes(freeze(state.getBombs())), codes(snap.getBombs()), "bomb list at " + where);
+                }
+                if (rnd.nextInt(5) == 0) {
+                    kept.add(snap);
+                    keptContents.add(live);
+                }
+            }
+            for (int i = 0; i < kept.size(); i++) {
+                assertGridsMatch(kept.get(i), keptContents.get(i), width, height, rnd,
+                        "round " + round + ", snapshot " + i + " kept to the end");
+            }
+        }
+    }
+
+    /** Moves an entity, kills an enemy, places a bomb or sets one off. */
+    private static void change(GameState state, SplittableRandom rnd) {
+        Level level = state.getLevel();
+        int width = level.getWidth(), height = level.getHeight();
+        List<Enemy> enemies = state.getEnemies();
+        List<Bomb> bombs = state.getBombs();
+        switch (rnd.nextInt(6)) {
+            case 0:
+            case 1:
+                if (enemies.isEmpty()) break;
+                Enemy e = enemies.get(rnd.nextInt(enemies.size()));
+                if (rnd.nextBoolean()) {
+                    int d = rnd.nextInt(4);
+                    e.setPosition(clamp(e.getX() + FlowField.dx(d), width), clamp(e.getY() + FlowField.dy(d), height));
+                } else {
+                    e.setPosition(rnd.nextInt(width), rnd.nextInt(height));
+                }
+                break;
+            case 2:
+                state.getPlayer().setPosition(rnd.nextInt(width), rnd.nextInt(height));
+                break;
+            case 3:
+                if (enemies.isEmpty()) break;
+                enemies.get(rnd.nextInt(enemies.size())).setDead(true);
+                state.removeDeadEnemies();
+                break;
+            case 4:
+                int x = rnd.nextInt(width), y = rnd.nextInt(height);
+                if (level.isWalkable(x, y) && state.getOccupancy().bombAt(x, y) == null) {
+                    state.addBomb(new Bomb(x, y, 1 + rnd.nextInt(8), 1 + rnd.nextInt(4)));
+                }
+                break;
+            default:
+                if (bombs.isEmpty()) break;
+                bombs.get(rnd.nextInt(bombs.size())).trigger();
+                state.removeExplodedBombs();
+                break;
+        }
+    }
+
+    private static int clamp(int v, int size) {
+        return Math.max(0, Math.min(size - 1, v));
+    }
+
+    /**
+     * Compares the grids of a snapshot with the sorted entity codes they
+     * should hold, over the whole level and over a random rectangle.
+     */
+    private static void assertGridsMatch(StateSnapshot snap, long[][] expected, int width, int height,
+            SplittableRandom rnd, String where) {
+        EntityGrid[] grids = { snap.getEnemyGrid(), snap.getBombGrid() };
+        String[] names = { "enemies", "bombs" };
+        int x0 = rnd.nextInt(width), y0 = rnd.nextInt(height);
+        int x1 = x0 + 1 + rnd.nextInt(width - x0), y1 = y0 + 1 + rnd.nextInt(height - y0);
+        for (int g = 0; g < 2; g++) {
+            assertEquals(expected[g].length, grids[g].size(), "number of " + names[g] + " at " + where);
+            assertArrayEquals(expected[g], query(grids[g], 0, 0, width, height), names[g] + " at " + where);
+
+            long[] inside = Arrays.stream(expected[g]).filter(c -> {
+                int x = (int) (c >> 20 & 0xFFFFF), y = (int) (c & 0xFFFFF);
+                return x >= x0 && y >= y0 && x < x1 && y < y1;
+            }).toArray();
+            assertArrayEquals(inside, query(grids[g], x0, y0, x1, y1),
+                    names[g] + " in (" + x0 + ", " + y0 + ")-(" + x1 + ", " + y1 + ") at " + where);
+        }
+    }
+
+    /** @return the entities in a rectangle of a grid, as sorted {@link #codes} */
+    private static long[] query(EntityGrid grid, int x0, int y0, int x1, int y1) {
+        List<EntitySnapshot> found = new ArrayList<>();
+        grid.forEachIn(x0, y0, x1, y1, found::add);
+        long[] codes = codes(found);
+        Arrays.sort(codes);
+        return codes;
+    }
+
+    /** @return the live entities as sorted {@link #codes} */
+    private static long[] encode(List<? extends Entity> entities) {
+        long[] codes = codes(freeze(entities));
+        Arrays.sort(codes);
+        return codes;
+    }
+
+    private static List<EntitySnapshot> freeze(List<? extends Entity> entities) {
+        List<EntitySnapshot> frozen = new ArrayList<>();
+        for (Entity e : entities) frozen.add(EntitySnapshot.of(e));
+        return frozen;
+    }
+
+    /** @return the logo and position of each entity packed into a number, in list order */
+    private static long[] codes(List<EntitySnapshot> entities) {
+        long[] codes = new long[entities.size()];
+        for (int i = 0; i < codes.length; i++) {
+            EntitySnapshot e = entities.get(i);
+            codes[i] = (long) e.getLogo() << 40 | (long) e.getX() << 20 | e.getY();
+        }
+        return codes;
+    }
+}
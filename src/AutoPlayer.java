@@ -0,0 +1,215 @@
+import java.util.Arrays;
+
+/**
+ * AutoPlayer.java
+ *
+ * A simple bot that plays a {@link Game} through the same keys as a person,
+ * used by {@link BatchRunner} to play thousands of games unattended.
+ *
+ * Each tick it picks one key:
+ * - If a pending blast will reach its cell, it runs for the nearest cell the
+ *   {@link DangerMap} marks safe.
+ * - If an enemy is in reach of a bomb, or the next soft wall on the way to the
+ *   exit is right ahead, it drops a bomb, but only when it can get clear of the
+ *   blast before the fuse runs out.
+ * - Otherwise it walks the shortest route to the exit, treating soft walls
+ *   as ground it will have to blast through.
+ *
+ * Routes never pass a cell that will be blasted on the tick the bot would be
+ * standing on it, nor a cell with an enemy on it.
+ *
+ */
+public class AutoPlayer {
+
+    /** Movement keys, in direction order right, left, down, up. */
+    private static final String[] KEYS = { "D", "A", "S", "W" };
+    private static final int[] DX = { 1, -1, 0, 0 };
+    private static final int[] DY = { 0, 0, 1, -1 };
+
+    private final Game game;
+
+    /** A bomb like the ones the player drops, for its fuse and range. */
+    private final Bomb probe = new Bomb(0, 0);
+
+    /** Breadth-first search state, one entry per cell, reused every tick. */
+    private int[] dist = new int[0];
+    private int[] parent = new int[0];
+    private int[] queue = new int[0];
+
+    /**
+     * Constructs a bot for a game.
+     *
+     * @param game the game to play
+     */
+    public AutoPlayer(Game game) {
+        this.game = game;
+    }
+
+    /**
+     * Chooses the key to press this tick.
+     *
+     * @return a key for {@link Game#processPlayerInput}, or {@code null} to wait
+     */
+    public String nextInput() {
+        GameState state = game.getState();
+        Level level = state.getLevel();
+        Player player = state.getPlayer();
+        DangerMap danger = state.getDanger();
+        int px = player.getX(), py = player.getY();
+
+        if (danger.getBlastTurn(px, py) != DangerMap.SAFE) {
+            search(state, false, Integer.MAX_VALUE);
+            return toward(state, nearestSafe(state, -1, -1, 0));
+        }
+
+        // The route to the exit, through soft walls if need be
+        int exit = search(state, true, Integer.MAX_VALUE);
+        int wall = -1, stand = -1;
+        if (exit >= 0) {
+            for (int c = exit; c != cell(px, py); c = parent[c]) {
+                if (level.getType(c % level.getWidth(), c / level.getWidth()) == Tile.Type.SOFT_WALL) {
+                    wall = c;
+                    stand = parent[c];
+                }
+            }
+        }
+
+        boolean wallAhead = wall >= 0 && stand == cell(px, py);
+        if ((wallAhead || enemyInReach(state, px, py)) && player.canPlaceBomb()
+                && state.getOccupancy().bombAt(px, py) == null && canEscape(state, px, py)) {
+            return "B";
+        }
+        if (exit < 0) return null;
+        return toward(state, wall >= 0 ? stand : exit);
+    }
+
+    /**
+     * Finds the first step towards a cell found by the last search.
+     *
+     * @return the key for that step, or {@code null} to stay put
+     */
+    private String toward(GameState state, int target) {
+        if (target < 0) return null;
+        Player player = state.getPlayer();
+        int start = cell(player.getX(), player.getY());
+        if (target == start) return null;
+        int c = target;
+        while (parent[c] != start) c = parent[c];
+        int w = state.getLevel().getWidth();
+        for (int d = 0; d < 4; d++) {
+            if (c == start + DX[d] + DY[d] * w) return KEYS[d];
+        }
+        return null;
+    }
+
+    /**
+     * Breadth-first search from the player. A cell may be entered if it is
+     * walkable (or a soft wall, if allowed), holds no enemy, and will not be
+     * blasted on the tick the player would stand there.
+     *
+     * @param throughSoftWalls whether paths may lead through soft walls
+     * @param maxDepth         the deepest level to search
+     * @return the cell of the exit if it was reached, else -1
+     */
+    private int search(GameState state, boolean throughSoftWalls, int maxDepth) {
+        Level level = state.getLevel();
+        DangerMap danger = state.getDanger();
+        OccupancyIndex occupancy = state.getOccupancy();
+        int w = level.getWidth(), h = level.getHeight();
+        int turn = state.getTurnCounter();
+        if (dist.length != w * h) {
+            dist = new int[w * h];
+            parent = new int[w * h];
+            queue = new int[w * h];
+        }
+        Arrays.fill(dist, -1);
+
+        Player player = state.getPlayer();
+        int start = cell(player.getX(), player.getY());
+        int exit = -1;
+        int head = 0, tail = 0;
+        dist[start] = 0;
+        parent[start] = -1;
+        queue[tail++] = start;
+        while (head < tail) {
+            int c = queue[head++];
+            int x = c % w, y = c / w;
+            if (level.getType(x, y) == Tile.Type.EXIT) exit = c;
+            if (dist[c] >= maxDepth) continue;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + DX[d], ny = y + DY[d];
+                if (nx < 0 || ny < 0 || nx >= w || ny >= h) continue;
+                int n = ny * w + nx;
+                if (dist[n] >= 0) continue;
+                Tile.Type t = level.getType(nx, ny);
+                boolean passable = t == Tile.Type.FLOOR || t == Tile.Type.EXIT
+                        || (throughSoftWalls && t == Tile.Type.SOFT_WALL);
+                if (!passable || occupancy.enemiesAt(nx, ny) > 0) continue;
+                // arriving at depth k + 1 means standing there during the tick of turn + k
+                if (danger.getBlastTurn(nx, ny) == turn + dist[c]) continue;
+                dist[n] = dist[c] + 1;
+                parent[n] = c;
+                queue[tail++] = n;
+            }
+        }
+        return exit;
+    }
+
+    /**
+     * Picks the closest cell reached by the last search that no pending blast
+     * will reach, optionally also outside the blast of a bomb about to be
+     * placed at (bx, by).
+     *
+     * @return the cell, or -1 if there is none
+     */
+    private int nearestSafe(GameState state, int bx, int by, int range) {
+        Level level = state.getLevel();
+        DangerMap danger = state.getDanger();
+        int w = level.getWidth();
+        int best = -1;
+        for (int c = 0; c < dist.length; c++) {
+            if (dist[c] < 0 || (best >= 0 && dist[c] >= dist[best])) continue;
+            int x = c % w, y = c / w;
+            if (!level.isWalkable(x, y) || danger.getBlastTurn(x, y) != DangerMap.SAFE) continue;
+            if (bx >= 0 && inBlast(level, bx, by, range, x, y)) continue;
+            best = c;
+        }
+        return best;
+    }
+
+    /**
+     * Checks that a bomb dropped here now leaves a safe cell within reach
+     * before it goes off.
+     */
+    private boolean canEscape(GameState state, int px, int py) {
+        search(state, false, probe.getTimer() - 1);
+        return nearestSafe(state, px, py, probe.getRange()) >= 0;
+    }
+
+    /** @return whether an enemy stands where a bomb dropped at (px, py) would reach */
+    private boolean enemyInReach(GameState state, int px, int py) {
+        Level level = state.getLevel();
+        int range = probe.getRange();
+        for (Enemy e : state.getEnemies()) {
+            if (inBlast(level, px, py, range, e.getX(), e.getY())) return true;
+        }
+        return false;
+    }
+
+    /** @return whether a blast from (bx, by) with the given range reaches (x, y) */
+    private static boolean inBlast(Level level, int bx, int by, int range, int x, int y) {
+        if (x != bx && y != by) return false;
+        int len = Math.abs(x - bx) + Math.abs(y - by);
+        if (len > range) return false;
+        int sx = Integer.signum(x - bx), sy = Integer.signum(y - by);
+        for (int i = 1; i < len; i++) {
+            Tile.Type t = level.getType(bx + sx * i, by + sy * i);
+            if (t == Tile.Type.HARD_WALL || t == Tile.Type.SOFT_WALL) return false;
+        }
+        return true;
+    }
+
+    private int cell(int x, int y) {
+        return y * game.getState().getLevel().getWidth() + x;
+    }
+}
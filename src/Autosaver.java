@@ -0,0 +1,236 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Autosaver.java
+ *
+ * Saves a running game every few turns without slowing its ticks down.
+ *
+ * - The game thread calls {@link #tick(GameState)} after each tick. Every
+ *   {@code interval} turns it takes a {@link StateSnapshot} for saving, which
+ *   shares all unchanged tiles and entities with the snapshot before it, and
+ *   drops it into a one-slot mailbox. That is all the game thread does.
+ * - A background writer thread takes the latest snapshot from the slot,
+ *   writes it with {@link SaveFile} to a temporary file next to the save,
+ *   forces it to disk and renames it over the save in one atomic move, so a
+ *   crash mid-save leaves the previous save intact. The directory is then
+ *   forced too, so the rename itself survives a crash.
+ * - If the writer is still busy when the next snapshot comes, the newer one
+ *   replaces the older one waiting in the slot; only the latest state is
+ *   ever worth writing.
+ * - The writer only runs while the game thread has nothing to do. Waking it
+ *   from {@link #tick} would otherwise let it take the processor before the
+ *   tick has finished, and on a single core every save made that tick about
+ *   one save slower. So the writer yields once before it starts, letting the
+ *   tick finish, then again after every block it writes, through a
+ *   {@link YieldingChannel}, so the next tick never waits for more than one
+ *   block. Java thread priorities cannot do this, as most platforms ignore
+ *   them.
+ *
+ */
+public class Autosaver implements Runnable {
+
+    /** The file the game autosaves to, apart from the Z/X save. */
+    public static final Path DEFAULT_FILE = Paths.get("shadow-escape-auto.sav");
+
+    private final Path file;
+    private final Path temp;
+    private final int interval;
+
+    /** The newest snapshot not yet written, if any. */
+    private final AtomicReference<StateSnapshot> pending = new AtomicReference<>();
+
+    private volatile boolean running;
+    private volatile Thread thread;
+
+    /** Turn of the last snapshot taken; used on the game thread only. */
+    private int lastTurn;
+
+    private volatile int savedTurn = -1;
+    private volatile int saves;
+    private volatile int skipped;
+
+    /**
+     * Constructs an autosaver.
+     *
+     * @param file     the save file to keep up to date
+     * @param interval the number of turns between saves
+     */
+    public Autosaver(Path file, int interval) {
+        if (interval <= 0) throw new IllegalArgumentException("Autosave interval must be positive: " + interval);
+        this.file = file;
+        this.temp = file.resolveSibling(file.getFileName() + ".tmp");
+        this.interval = interval;
+    }
+
+    /**
+     * Starts the writer on a new daemon thread.
+     */
+    public void start() {
+        running = true;
+        Thread t = new Thread(this, "autosave");
+        t.setDaemon(true);
+        thread = t;
+        t.start();
+    }
+
+    /**
+     * Asks the writer to finish the save waiting, if any, and stop.
+     */
+    public void stop() {
+        running = false;
+        Thread t = thread;
+        if (t != null) LockSupport.unpark(t);
+    }
+
+    /**
+     * Waits for the writer to stop after {@link #stop()}.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void join() throws InterruptedException {
+        Thread t = thread;
+        if (t != null) t.join();
+    }
+
+    /**
+     * Hands the state to the writer if {@code interval} turns have passed
+     * since the last save. Call on the game thread after every tick.
+     *
+     * @param state the game state
+     */
+    public void tick(GameState state) {
+        int turn = state.getTurnCounter();
+        if (turn - lastTurn < interval && turn >= lastTurn) return;
+        lastTurn = turn;
+        save(state.snapshotForSave());
+    }
+
+    /**
+     * Hands a snapshot to the writer now, replacing any not yet written.
+     * Safe to call from any thread.
+     *
+     * @param snapshot a snapshot taken with {@link GameState#snapshotForSave()}
+     */
+    public void save(StateSnapshot snapshot) {
+        if (pending.getAndSet(snapshot) != null) skipped++;
+        Thread t = thread;
+        if (t != null) LockSupport.unpark(t);
+    }
+
+    /**
+     * Saves the state straight away on the calling thread, the same way the
+     * writer does, e.g. when the game is closing.
+     *
+     * @param state the game state
+     */
+    public void saveNow(GameState state) {
+        write(state.snapshotForSave(), false);
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            StateSnapshot next = pending.getAndSet(null);
+            if (next != null) {
+                Thread.yield();
+                write(next, true);
+            } else if (running) {
+                LockSupport.park(this);
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot to the temporary file, forces it to disk, moves it
+     * over the save file and forces the directory, so the move is on disk too.
+     *
+     * @param snapshot the snapshot to write
+     * @param yield    whether to yield the processor between blocks
+     */
+    private void write(StateSnapshot snapshot, boolean yield) {
+        try {
+            try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                SaveFile.write(yield ? new YieldingChannel(ch) : ch, snapshot);
+                ch.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            forceDirectory();
+            savedTurn = snapshot.getTurn();
+            saves++;
+        } catch (IOException e) {
+            System.err.println("Autosave failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Forces the directory holding the save to disk, making the last rename
+     * durable. Some platforms, such as Windows, cannot open a directory as a
+     * channel; there the rename is left to the file system.
+     */
+    private void forceDirectory() {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir == null) return;
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Directories cannot be forced on this platform
+        }
+    }
+
+    /** @return the turn of the last snapshot written to disk, or -1 if none yet */
+    public int getSavedTurn() {
+        return savedTurn;
+    }
+
+    /** @return the number of saves written */
+    public int getSaveCount() {
+        return saves;
+    }
+
+    /** @return the number of snapshots replaced by a newer one before being written */
+    public int getSkippedCount() {
+        return skipped;
+    }
+
+    /**
+     * Passes writes on to a channel and yields the processor after each one,
+     * so a save written through it pauses whenever the game thread wants to
+     * run. Closing it leaves the channel open.
+     */
+    private static final class YieldingChannel implements WritableByteChannel {
+        private final WritableByteChannel ch;
+
+        YieldingChannel(WritableByteChannel ch) {
+            this.ch = ch;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int n = ch.write(src);
+            Thread.yield();
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return ch.isOpen();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,63 @@
+import java.util.stream.LongStream;
+
+/**
+ * BatchRunner.java
+ *
+ * Plays many complete games with {@link AutoPlayer} across all cores and
+ * prints aggregate {@link SimulationStats}, so enemy balance changes can be
+ * judged from numbers instead of by playing by hand.
+ *
+ * Game {@code i} is played on the level generated from seed {@code i}. Games
+ * run on the common fork-join pool through a parallel stream; each worker
+ * collects into its own stats object and the objects are merged at the end.
+ *
+ * Usage: {@code java BatchRunner [games] [maxTurns]}
+ *
+ */
+public class BatchRunner {
+
+    public static void main(String[] args) {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 100_000;
+        int maxTurns = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+
+        long start = System.nanoTime();
+        SimulationStats stats = run(games, maxTurns);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(stats);
+        System.out.printf("%.2f s, %,.0f games/s on %d threads%n",
+                elapsed, games / elapsed, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Plays games with seeds {@code 0 .. games - 1} in parallel.
+     *
+     * @param games    the number of games
+     * @param maxTurns turns after which an unfinished game counts as timed out
+     * @return the merged totals
+     */
+    public static SimulationStats run(long games, int maxTurns) {
+        return LongStream.range(0, games).parallel()
+                .collect(SimulationStats::new,
+                         (stats, seed) -> stats.add(play(seed, maxTurns)),
+                         SimulationStats::combine);
+    }
+
+    /**
+     * Plays one game with the bot until it ends or hits the turn limit.
+     *
+     * @param seed     the level seed
+     * @param maxTurns the turn limit
+     * @return the game in its final state
+     */
+    public static Game play(long seed, int maxTurns) {
+        Game game = new Game(seed);
+        AutoPlayer bot = new AutoPlayer(game);
+        while (!game.isGameOver() && game.getState().getTurnCounter() < maxTurns) {
+            String key = bot.nextInput();
+            if (key == null) game.step();
+            else game.step(key);
+        }
+        return game;
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * BlastBuffer.java
+ *
+ * Reusable list of the cells reached by one or more bomb blasts.
+ * {@link Bomb#explode(Level, BlastBuffer)} appends cells here instead of
+ * creating an {@link Explosion} object per cell, so a game that keeps one
+ * buffer and clears it every tick detonates bombs without allocating.
+ *
+ * Cells are stored as parallel primitive X and Y arrays that only grow when
+ * a tick's blasts cover more cells than ever before.
+ *
+ */
+public class BlastBuffer {
+    private int[] xs;
+    private int[] ys;
+    private int size;
+
+    /**
+     * Constructs an empty buffer with room for a few blasts.
+     */
+    public BlastBuffer() {
+        this(64);
+    }
+
+    /**
+     * Constructs an empty buffer.
+     *
+     * @param capacity number of cells to reserve room for
+     */
+    public BlastBuffer(int capacity) {
+        xs = new int[Math.max(1, capacity)];
+        ys = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Appends a blasted cell.
+     *
+     * @param x the X-coordinate of the cell
+     * @param y the Y-coordinate of the cell
+     */
+    public void add(int x, int y) {
+        if (size == xs.length) {
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    /** Forgets all cells, keeping the storage for reuse. */
+    public void clear() {
+        size = 0;
+    }
+
+    /** @return the number of cells in the buffer */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i position in the buffer, below {@link #size()}
+     * @return the X-coordinate of the i-th cell
+     */
+    public int x(int i) {
+        return xs[i];
+    }
+
+    /**
+     * @param i position in the buffer, below {@link #size()}
+     * @return the Y-coordinate of the i-th cell
+     */
+    public int y(int i) {
+        return ys[i];
+    }
+
+    /**
+     * Copies the buffer into {@link Explosion} objects for callers that
+     * still work with explosion lists.
+     *
+     * @return one explosion per buffered cell
+     */
+    public List<Explosion> toExplosions() {
+        List<Explosion> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(new Explosion(xs[i], ys[i]));
+        }
+        return list;
+    }
+}
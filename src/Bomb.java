@@ -1,5 +1,4 @@
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -15,17 +14,31 @@ import java.util.List;
  * Bombs now also feature a configurable explosion range determined by
  * the player’s power-ups.
  * 
- * Upon detonation, the bomb generates {@link Explosion} objects in
- * the four cardinal directions (up, down, left, right), up to its range.
+ * Upon detonation, the bomb reports the blasted cells in the four
+ * cardinal directions (up, down, left, right), up to its range, into a
+ * reusable {@link BlastBuffer} or as a list of {@link Explosion} objects.
  * 
  */
 public class Bomb extends Entity implements Serializable {
     private static final long serialVersionUID = 1L;
 
-    /** Turns remaining before explosion. */
+    /** Turns from placement to explosion. */
     private int timer;
     /** The radius of the explosion. */
     private int range;
+    /** The turn on which the bomb explodes, once armed. */
+    private int dueTurn;
+    /** Whether {@link #dueTurn} has been set. */
+    private boolean armed;
+    /** Whether the bomb has gone off (or is going off this tick). */
+    private boolean detonated;
+
+    /** The turn it actually goes off, counting chain reactions; kept by {@link DangerMap}. */
+    transient int blastTurn;
+
+    /** Blast directions: right, left, down, up. */
+    private static final int[] DX = { 1, -1, 0, 0 };
+    private static final int[] DY = { 0, 0, 1, -1 };
 
     /**
      * Constructs a standard Bomb.
@@ -54,20 +67,62 @@ public class Bomb extends Entity implements Serializable {
     }
 
     /**
-     * Decrements the fuse timer by one.
+     * Lights the fuse. A bomb armed during turn {@code t} explodes in the
+     * game tick of turn {@code t + timer - 1}, i.e. after {@code timer} ticks.
+     *
+     * @param currentTurn the turn on which the bomb is placed
+     */
+    public void arm(int currentTurn) {
+        this.dueTurn = currentTurn + timer - 1;
+        this.armed = true;
+    }
+
+    /** @return whether the fuse has been lit */
+    public boolean isArmed() {
+        return armed;
+    }
+
+    /** @return the turn on which the bomb explodes */
+    public int getDueTurn() {
+        return dueTurn;
+    }
+
+    /**
+     * Gets the countdown shown on the bomb.
+     *
+     * @param currentTurn the current turn
+     * @return the number of ticks left before the explosion
      */
-    public void tick() {
-        timer--;
+    public int getTurnsLeft(int currentTurn) {
+        return dueTurn - currentTurn + 1;
     }
 
     /**
-     * Gets the current timer value.
-     * @return int representing turns left.
+     * Marks the bomb as going off this tick, either because its fuse ran
+     * out or because another bomb's blast reached it.
+     */
+    public void trigger() {
+        detonated = true;
+    }
+
+    /** @return whether the bomb has gone off */
+    public boolean isDetonated() {
+        return detonated;
+    }
+
+    /**
+     * Gets the fuse length.
+     * @return int representing turns from placement to explosion.
      */
     public int getTimer() {
         return timer;
     }
 
+    /** @return the radius of the explosion */
+    public int getRange() {
+        return range;
+    }
+
     /**
      * Calculates the spread of the explosion based on the map layout.
      * Stops at Hard Walls, destroys Soft Walls.
@@ -76,30 +131,40 @@ public class Bomb extends Entity implements Serializable {
      * @return a List of Explosion objects representing the blast area
      */
     public List<Explosion> explode(Level level) {
-        List<Explosion> list = new ArrayList<>();
+        BlastBuffer cells = new BlastBuffer();
+        explode(level, cells);
+        return cells.toExplosions();
+    }
+
+    /**
+     * Calculates the spread of the explosion without allocating, appending
+     * each blasted cell to a caller-owned buffer.
+     * Stops at Hard Walls, destroys Soft Walls.
+     *
+     * @param level the current Level object to check for walls
+     * @param out   the buffer the blasted cells are appended to
+     */
+    public void explode(Level level, BlastBuffer out) {
         // Center of explosion
-        list.add(new Explosion(getX(), getY()));
+        out.add(getX(), getY());
 
-        int[][] dirs = {{1,0},{-1,0},{0,1},{0,-1}};
-        
         // Raycast in 4 directions
-        for (int[] d : dirs) {
+        for (int d = 0; d < 4; d++) {
             for (int i = 1; i <= range; i++) {
-                int nx = getX() + d[0] * i;
-                int ny = getY() + d[1] * i;
+                int nx = getX() + DX[d] * i;
+                int ny = getY() + DY[d] * i;
 
                 if (nx < 0 || ny < 0 || nx >= level.getWidth() || ny >= level.getHeight()) break;
 
-                list.add(new Explosion(nx, ny));
+                out.add(nx, ny);
 
-                Tile tile = level.getTile(nx, ny);
-                if (tile.getType() == Tile.Type.HARD_WALL) break;
-                if (tile.getType() == Tile.Type.SOFT_WALL) {
+                Tile.Type type = level.getType(nx, ny);
+                if (type == Tile.Type.HARD_WALL) break;
+                if (type == Tile.Type.SOFT_WALL) {
                     level.setTile(nx, ny, Tile.Type.FLOOR); // Destroy the wall
                     break; // Stop expansion after hitting a wall
                 }
             }
         }
-        return list;
     }
-}
\ No newline at end of file
+}
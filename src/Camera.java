@@ -0,0 +1,84 @@
+/**
+ * Camera.java
+ *
+ * The window onto a level that is too big to show whole. The camera covers a
+ * fixed number of tile columns and rows and follows the player, keeping them
+ * centred except near the edges of the level, where it stops so that no space
+ * outside the level is shown.
+ *
+ * Renderers draw only the tiles and entities inside {@link #contains}, so the
+ * cost of a frame depends on the size of the view, not of the level.
+ *
+ */
+public class Camera {
+
+    private final int columns;
+    private final int rows;
+    private final int levelWidth;
+    private final int levelHeight;
+
+    /** Top-left visible tile. */
+    private int x;
+    private int y;
+
+    /**
+     * Constructs a camera over a level. A view larger than the level is
+     * shrunk to fit it.
+     *
+     * @param columns     visible tiles across
+     * @param rows        visible tiles down
+     * @param levelWidth  width of the level in tiles
+     * @param levelHeight height of the level in tiles
+     */
+    public Camera(int columns, int rows, int levelWidth, int levelHeight) {
+        this.columns = Math.min(columns, levelWidth);
+        this.rows = Math.min(rows, levelHeight);
+        this.levelWidth = levelWidth;
+        this.levelHeight = levelHeight;
+    }
+
+    /**
+     * Centres the view on a tile, as far as the level edges allow.
+     *
+     * @param tx the X-coordinate of the tile to follow
+     * @param ty the Y-coordinate of the tile to follow
+     * @return {@code true} if the view moved
+     */
+    public boolean follow(int tx, int ty) {
+        int nx = Math.max(0, Math.min(tx - columns / 2, levelWidth - columns));
+        int ny = Math.max(0, Math.min(ty - rows / 2, levelHeight - rows));
+        boolean moved = nx != x || ny != y;
+        x = nx;
+        y = ny;
+        return moved;
+    }
+
+    /**
+     * @param tx the X-coordinate of a tile
+     * @param ty the Y-coordinate of a tile
+     * @return whether the tile is in view
+     */
+    public boolean contains(int tx, int ty) {
+        return tx >= x && ty >= y && tx < x + columns && ty < y + rows;
+    }
+
+    /** @return the X-coordinate of the leftmost visible tile */
+    public int getX() {
+        return x;
+    }
+
+    /** @return the Y-coordinate of the topmost visible tile */
+    public int getY() {
+        return y;
+    }
+
+    /** @return the number of visible tiles across */
+    public int getColumns() {
+        return columns;
+    }
+
+    /** @return the number of visible tiles down */
+    public int getRows() {
+        return rows;
+    }
+}
@@ -0,0 +1,198 @@
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.StackPane;
+import javafx.scene.paint.Color;
+
+/**
+ * CanvasView.java
+ *
+ * The canvas render mode: tiles and entities are drawn with
+ * {@link GraphicsContext} calls on two stacked canvases. The tile layer is
+ * kept between frames and only the tiles that changed since the last frame
+ * are repainted on it (every visible tile on the first frame and after the
+ * camera scrolls); the entity layer on top is cleared and redrawn with the
+ * blasts, bombs, enemies and player every frame.
+ *
+ * Only what is in the camera's view is drawn, and the entities in view are
+ * found through the snapshot's {@link EntityGrid}s rather than by scanning
+ * every entity. Sprites are drawn from the {@link SpriteAtlas}, uploaded as
+ * one image.
+ *
+ * Must be used on the JavaFX Application Thread.
+ *
+ */
+public class CanvasView {
+
+    private final int tileSize;
+    private final Canvas tileLayer;
+    private final Canvas entityLayer;
+    private final StackPane node;
+
+    /** The atlas as one image, or {@code null} to draw shapes only. */
+    private final SpriteAtlas atlas;
+    private final Image atlasImage;
+
+    /** The tiles painted on the tile layer and the camera position they were painted at. */
+    private TileSnapshot drawnTiles;
+    private int drawnX = -1;
+    private int drawnY = -1;
+
+    /**
+     * Constructs a view of a given size.
+     *
+     * @param columns  tiles across the view
+     * @param rows     tiles down the view
+     * @param tileSize the side of a tile in pixels
+     * @param atlas    the sprites, or {@code null} to draw shapes only
+     */
+    public CanvasView(int columns, int rows, int tileSize, SpriteAtlas atlas) {
+        this.tileSize = tileSize;
+        this.tileLayer = new Canvas(columns * tileSize, rows * tileSize);
+        this.entityLayer = new Canvas(columns * tileSize, rows * tileSize);
+        this.node = new StackPane(tileLayer, entityLayer);
+        this.atlas = atlas;
+        if (atlas != null) {
+            WritableImage img = new WritableImage(atlas.getWidth(), atlas.getHeight());
+            img.getPixelWriter().setPixels(0, 0, atlas.getWidth(), atlas.getHeight(),
+                    PixelFormat.getIntArgbInstance(), atlas.getPixels(), 0, atlas.getWidth());
+            this.atlasImage = img;
+        } else {
+            this.atlasImage = null;
+        }
+    }
+
+    /** @return the node showing the frames */
+    public Node getNode() {
+        return node;
+    }
+
+    /**
+     * Draws a frame.
+     *
+     * @param state  the state to draw
+     * @param camera the part of the level to draw
+     */
+    public void render(StateSnapshot state, Camera camera) {
+        int cx = camera.getX(), cy = camera.getY();
+        int cx1 = cx + camera.getColumns(), cy1 = cy + camera.getRows();
+
+        // Repaint changed tiles, or every visible tile on the first frame and after scrolling
+        TileSnapshot tiles = state.getTiles();
+        GraphicsContext tg = tileLayer.getGraphicsContext2D();
+        if (drawnTiles == null || cx != drawnX || cy != drawnY) {
+            for (int y = cy; y < cy1; y++) {
+                for (int x = cx; x < cx1; x++) {
+                    drawTile(tg, x - cx, y - cy, tiles.getType(x, y));
+                }
+            }
+        } else if (tiles != drawnTiles) {
+            tiles.forEachChangedCell(drawnTiles, (x, y, type) -> {
+                if (camera.contains(x, y)) drawTile(tg, x - cx, y - cy, type);
+            });
+        }
+        drawnTiles = tiles;
+        drawnX = cx;
+        drawnY = cy;
+
+        // Clear the entity layer
+        GraphicsContext gc = entityLayer.getGraphicsContext2D();
+        gc.clearRect(0, 0, entityLayer.getWidth(), entityLayer.getHeight());
+
+        // Draw blasts that are still burning
+        gc.setFill(Color.ORANGE);
+        for (int i = 0; i < state.getBlastCount(); i++) {
+            int bx = state.getBlastX(i), by = state.getBlastY(i);
+            if (!camera.contains(bx, by)) continue;
+            gc.fillRect((bx - cx) * tileSize + 2, (by - cy) * tileSize + 2, tileSize - 4, tileSize - 4);
+        }
+
+        // Draw Bombs
+        state.getBombGrid().forEachIn(cx, cy, cx1, cy1, b -> {
+            int sx = b.getX() - cx, sy = b.getY() - cy;
+            if (!drawSprite(gc, "bomb", sx, sy)) {
+                gc.setFill(Color.BLACK);
+                gc.fillOval(sx * tileSize + 5, sy * tileSize + 5, tileSize - 10, tileSize - 10);
+            }
+        });
+
+        // Draw Enemies (Color coded by type)
+        state.getEnemyGrid().forEachIn(cx, cy, cx1, cy1, e -> {
+            int sx = e.getX() - cx, sy = e.getY() - cy;
+            char logo = e.getLogo();
+            String sprite = logo == 'C' ? "charger" : logo == 'W' ? "wraith" : "shadowling";
+
+            if (!drawSprite(gc, sprite, sx, sy)) {
+                // Fallback to colored rectangles
+                if (logo == 'C') gc.setFill(Color.ORANGERED);
+                else if (logo == 'W') gc.setFill(Color.PURPLE);
+                else gc.setFill(Color.RED);
+
+                gc.fillRect(sx * tileSize + 5, sy * tileSize + 5, tileSize - 10, tileSize - 10);
+            }
+        });
+
+        // Draw Player
+        EntitySnapshot player = state.getPlayer();
+        if (camera.contains(player.getX(), player.getY())
+                && !drawSprite(gc, "player", player.getX() - cx, player.getY() - cy)) {
+            gc.setFill(Color.CYAN);
+            gc.fillRect((player.getX() - cx) * tileSize + 5, (player.getY() - cy) * tileSize + 5, tileSize - 10, tileSize - 10);
+        }
+    }
+
+    /**
+     * Makes the next frame repaint every visible tile.
+     */
+    public void invalidate() {
+        drawnTiles = null;
+    }
+
+    /**
+     * Draws a sprite from the atlas over one tile of the view.
+     *
+     * @return {@code false} if there is no such sprite, so the caller draws a shape
+     */
+    private boolean drawSprite(GraphicsContext gc, String name, int sx, int sy) {
+        SpriteAtlas.Region r = atlas == null ? null : atlas.get(name);
+        if (r == null) return false;
+        gc.drawImage(atlasImage, r.x, r.y, r.width, r.height, sx * tileSize, sy * tileSize, tileSize, tileSize);
+        return true;
+    }
+
+    /**
+     * Draws a tile at view coordinates.
+     *
+     * @param gc   the GraphicsContext used for drawing
+     * @param x    the X coordinate in view, in tiles from the camera's left edge
+     * @param y    the Y coordinate in view, in tiles from the camera's top edge
+     * @param type the type of the tile
+     */
+    private void drawTile(GraphicsContext gc, int x, int y, Tile.Type type) {
+        switch (type) {
+            case HARD_WALL:
+                gc.setFill(Color.DARKGRAY);
+                gc.fillRect(x * tileSize, y * tileSize, tileSize, tileSize);
+                break;
+            case SOFT_WALL:
+                gc.setFill(Color.SADDLEBROWN);
+                gc.fillRect(x * tileSize, y * tileSize, tileSize, tileSize);
+                // Add a border to soft walls for detail, kept inside the tile so
+                // repainting a neighbour alone leaves no trace of it
+                gc.setStroke(Color.BLACK);
+                gc.strokeRect(x * tileSize + 0.5, y * tileSize + 0.5, tileSize - 1, tileSize - 1);
+                break;
+            case FLOOR:
+                gc.setFill(Color.LIGHTGRAY);
+                gc.fillRect(x * tileSize, y * tileSize, tileSize, tileSize);
+                break;
+            case EXIT:
+                gc.setFill(Color.GOLD);
+                gc.fillRect(x * tileSize, y * tileSize, tileSize, tileSize);
+                break;
+        }
+    }
+}
@@ -1,6 +1,4 @@
 
-import java.util.Random;
-
 /**
  * Charger.java
  *
@@ -10,7 +8,6 @@ import java.util.Random;
  */
 public class Charger extends Enemy {
     private static final long serialVersionUID = 1L;
-    private Random rnd = new Random();
 
     public Charger(int x, int y) {
         super(x, y);
@@ -20,8 +17,8 @@ public class Charger extends Enemy {
     @Override
     public void update(Level level, Player player) {
         int[] dirs = { -1, 1 };
-        int dx = dirs[rnd.nextInt(2)] * (rnd.nextBoolean() ? 2 : 0);
-        int dy = dx == 0 ? dirs[rnd.nextInt(2)] * 2 : 0;
+        int dx = dirs[nextRandom(2)] * (nextRandom(2) == 0 ? 2 : 0);
+        int dy = dx == 0 ? dirs[nextRandom(2)] * 2 : 0;
 
         move(dx, dy, level);
     }
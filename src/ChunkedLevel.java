@@ -0,0 +1,238 @@
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ChunkedLevel.java
+ *
+ * A {@link Level} for very large maps that never holds the whole grid in memory.
+ * The map is split into fixed-size square chunks that are generated on first
+ * access from the level seed and the chunk coordinate, so constructing the
+ * level costs the same for a 13x11 map as for a 1,000,000x1,000,000 one.
+ *
+ * Untouched chunks live in a bounded LRU cache; when the player wanders off
+ * they are dropped and simply regenerated on the next visit. Chunks in which
+ * a tile was changed (e.g., a soft wall destroyed by a bomb) can no longer be
+ * regenerated, so they are moved out of the cache and kept for the rest of the
+ * session, and are written along with the level when it is serialized.
+ *
+ * The layout follows the same rules as {@link Level}: hard wall borders, a
+ * grid of hard wall pillars, scattered soft walls, a clear spawn corner and
+ * one exit near the bottom-right corner.
+ *
+ */
+public class ChunkedLevel extends Level {
+    private static final long serialVersionUID = 1L;
+
+    /** Chunk side length as a power of two (32x32 tiles). */
+    private static final int CHUNK_BITS = 5;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /** Default number of unmodified chunks kept in memory (256 KB of tiles). */
+    public static final int DEFAULT_CACHE_CHUNKS = 256;
+
+    /** Seed from which every chunk is generated. */
+    private final long seed;
+
+    /** Maximum number of unmodified chunks kept in {@link #cache}. */
+    private final int cacheChunks;
+
+    /** Chunks containing changed tiles; these are never evicted. */
+    private final HashMap<Long, byte[]> modified = new HashMap<>();
+
+    /** Unmodified chunks in least-recently-used order. */
+    private transient LinkedHashMap<Long, byte[]> cache;
+
+    /** Key and data of the last chunk accessed, to skip the map lookups. */
+    private transient long lastKey;
+    private transient byte[] lastChunk;
+
+    /**
+     * Constructs a chunked level with the default cache size.
+     *
+     * @param width  number of tiles horizontally
+     * @param height number of tiles vertically
+     * @param seed   seed from which the layout is generated
+     */
+    public ChunkedLevel(int width, int height, long seed) {
+        this(width, height, seed, DEFAULT_CACHE_CHUNKS);
+    }
+
+    /**
+     * Constructs a chunked level.
+     *
+     * @param width       number of tiles horizontally
+     * @param height      number of tiles vertically
+     * @param seed        seed from which the layout is generated
+     * @param cacheChunks maximum number of unmodified chunks kept in memory
+     */
+    public ChunkedLevel(int width, int height, long seed, int cacheChunks) {
+        super(width, height, null);
+        if (cacheChunks < 1)
+            throw new IllegalArgumentException("cacheChunks must be positive");
+        this.seed = seed;
+        this.cacheChunks = cacheChunks;
+        initCache();
+    }
+
+    /**
+     * Creates the LRU cache of unmodified chunks.
+     */
+    private void initCache() {
+        cache = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > cacheChunks;
+            }
+        };
+        lastChunk = null;
+    }
+
+    @Override
+    protected byte read(int x, int y) {
+        return chunk(x, y)[((y & CHUNK_MASK) << CHUNK_BITS) | (x & CHUNK_MASK)];
+    }
+
+    @Override
+    protected void write(int x, int y, byte t) {
+        byte[] c = chunk(x, y);
+        int i = ((y & CHUNK_MASK) << CHUNK_BITS) | (x & CHUNK_MASK);
+        if (c[i] == t) return;
+        c[i] = t;
+        Long key = lastKey;
+        if (cache.remove(key) != null) {
+            modified.put(key, c);
+        }
+    }
+
+    /**
+     * Finds the chunk containing a cell, generating it if needed.
+     *
+     * @param x the X-coordinate of the tile
+     * @param y the Y-coordinate of the tile
+     * @return the tiles of the chunk, row-major
+     */
+    private byte[] chunk(int x, int y) {
+        long key = ((long) (y >>> CHUNK_BITS) << 32) | (x >>> CHUNK_BITS);
+        if (lastChunk != null && key == lastKey) {
+            return lastChunk;
+        }
+        byte[] c = modified.get(key);
+        if (c == null) {
+            c = cache.get(key);
+            if (c == null) {
+                c = generateChunk(x & ~CHUNK_MASK, y & ~CHUNK_MASK);
+                cache.put(key, c);
+            }
+        }
+        lastKey = key;
+        lastChunk = c;
+        return c;
+    }
+
+    /**
+     * Generates the tiles of one chunk. The result depends only on the seed
+     * and the cell coordinates, so an evicted chunk regenerates identically.
+     *
+     * @param x0 X-coordinate of the chunk's top-left cell
+     * @param y0 Y-coordinate of the chunk's top-left cell
+     * @return the tiles of the chunk, row-major
+     */
+    private byte[] generateChunk(int x0, int y0) {
+        int width = getWidth();
+        int height = getHeight();
+        byte[] c = new byte[CHUNK_SIZE * CHUNK_SIZE];
+        for (int dy = 0; dy < CHUNK_SIZE; dy++) {
+            int y = y0 + dy;
+            for (int dx = 0; dx < CHUNK_SIZE; dx++) {
+                int x = x0 + dx;
+                // padding past the map edge is never read
+                c[(dy << CHUNK_BITS) | dx] = x >= width || y >= height ? HARD_WALL : generateTile(x, y);
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Generates the tile at one in-bounds cell. The result depends only on
+     * the seed and the cell coordinates.
+     *
+     * @param x the X-coordinate of the tile
+     * @param y the Y-coordinate of the tile
+     * @return the {@link Tile.Type} ordinal of the cell
+     */
+    private byte generateTile(int x, int y) {
+        int width = getWidth();
+        int height = getHeight();
+        if (x == 0 || y == 0 || x == width - 1 || y == height - 1) {
+            return HARD_WALL;
+        } else if (x == width - 2 && y == height - 2) {
+            return EXIT;
+        } else if (x % 2 == 0 && y % 2 == 0) {
+            return HARD_WALL;
+        } else if (x <= 2 && y <= 2) {
+            return FLOOR; // keep the spawn corner open
+        } else if (Math.floorMod(mix(seed, x, y), SOFT_WALL_ONE_IN) == 0) {
+            return SOFT_WALL;
+        }
+        return FLOOR;
+    }
+
+    /** @return whether no chunk has been modified yet */
+    @Override
+    protected boolean hasOriginalTiles() {
+        return modified.isEmpty();
+    }
+
+    /**
+     * Regenerates the original tile of a cell without touching the chunk
+     * cache, so it is safe on any thread.
+     */
+    @Override
+    protected byte readOriginal(int x, int y) {
+        return generateTile(x, y);
+    }
+
+    /**
+     * Hashes a seed and a cell coordinate into well-mixed bits.
+     *
+     * @param seed the level seed
+     * @param x    the X-coordinate of the tile
+     * @param y    the Y-coordinate of the tile
+     * @return pseudo-random bits for that cell
+     */
+    private static long mix(long seed, int x, int y) {
+        long z = seed + (((long) y << 32) | (x & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** @return the seed this level is generated from */
+    @Override
+    public long getSeed() {
+        return seed;
+    }
+
+    /** @return the number of chunks currently held in memory */
+    public int getLoadedChunkCount() {
+        return cache.size() + modified.size();
+    }
+
+    /**
+     * Rebuilds the transient chunk cache after deserialization.
+     *
+     * @param in the stream being read
+     * @throws IOException            if the stream cannot be read
+     * @throws ClassNotFoundException if a serialized class is missing
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        initCache();
+    }
+}
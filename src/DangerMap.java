@@ -0,0 +1,333 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * DangerMap.java
+ *
+ * Answers "will a blast reach this cell, and on which turn?" for every cell in
+ * reach of a pending bomb, including bombs set off early by chain reactions,
+ * so AI and bots can steer clear of blasts with one lookup instead of
+ * simulating every bomb.
+ *
+ * Each bomb carries its effective blast turn: its own fuse, or the blast turn
+ * of any bomb whose blast reaches it, whichever is earlier. A cell's danger is
+ * the earliest blast turn among the bombs whose blast reaches it. Only cells in
+ * danger are stored, so the map costs memory per bomb, not per tile.
+ *
+ * The map is kept up to date incrementally. Placing or removing a bomb, or a
+ * tile changing, only marks the bombs and cells within bomb range of it; the
+ * next lookup recomputes the blast turns of those bombs (and of any bomb their
+ * blasts reach) and the danger of the cells around them.
+ *
+ * Predictions use the walls as they are now: a soft wall stops a blast until
+ * it is destroyed, even if an earlier bomb in the same chain would clear it.
+ *
+ */
+public class DangerMap implements Level.TileListener {
+
+    /** Blast turn of a cell no pending blast reaches. */
+    public static final int SAFE = Integer.MAX_VALUE;
+
+    /** Blast directions: right, left, down, up. */
+    private static final int[] DX = { 1, -1, 0, 0 };
+    private static final int[] DY = { 0, 0, 1, -1 };
+
+    private final Level level;
+    private final OccupancyIndex occupancy;
+    private final long width;
+
+    /** Longest blast range of any bomb seen, bounding every search. */
+    private int maxRange;
+
+    /** Bombs placed, and centres of changes, not yet taken into account. */
+    private final List<Bomb> pendingBombs = new ArrayList<>();
+    private long[] pendingCells = new long[16];
+    private int pendingCount;
+
+    /** Scratch state for {@link #flush()}. */
+    private final Set<Bomb> affected = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final ArrayDeque<Bomb> work = new ArrayDeque<>();
+
+    // ---------------- Cell -> blast turn table ----------------
+
+    private static final long EMPTY = -1;
+    private long[] keys = new long[64];
+    private int[] turns = new int[64];
+    private int size;
+
+    /**
+     * Constructs an empty danger map and starts listening for tile changes.
+     *
+     * @param level     the level the bombs lie on
+     * @param occupancy the index used to find bombs by cell
+     */
+    public DangerMap(Level level, OccupancyIndex occupancy) {
+        this.level = level;
+        this.occupancy = occupancy;
+        this.width = level.getWidth();
+        Arrays.fill(keys, EMPTY);
+        level.addTileListener(this);
+    }
+
+    /**
+     * Stops listening for tile changes once the map is no longer needed.
+     */
+    public void detach() {
+        level.removeTileListener(this);
+    }
+
+    /**
+     * Takes a newly placed, armed bomb into account.
+     *
+     * @param b the bomb, already in the occupancy index
+     */
+    public void bombPlaced(Bomb b) {
+        maxRange = Math.max(maxRange, b.getRange());
+        pendingBombs.add(b);
+    }
+
+    /**
+     * Forgets a bomb that has exploded or been taken off the map.
+     *
+     * @param b the bomb, already removed from the occupancy index
+     */
+    public void bombRemoved(Bomb b) {
+        markCell(b.getX(), b.getY());
+    }
+
+    @Override
+    public void tileChanged(int x, int y, Tile.Type type) {
+        markCell(x, y);
+    }
+
+    /**
+     * Gets the turn on which a blast will reach a cell.
+     *
+     * @param x the X-coordinate of the cell
+     * @param y the Y-coordinate of the cell
+     * @return the turn of the earliest blast, or {@link #SAFE}
+     */
+    public int getBlastTurn(int x, int y) {
+        if (pendingCount > 0 || !pendingBombs.isEmpty()) flush();
+        int s = find(cell(x, y));
+        return s < 0 ? SAFE : turns[s];
+    }
+
+    /**
+     * Gets how many ticks are left before a blast reaches a cell, counted
+     * the same way as {@link Bomb#getTurnsLeft(int)}.
+     *
+     * @param x           the X-coordinate of the cell
+     * @param y           the Y-coordinate of the cell
+     * @param currentTurn the current turn
+     * @return the ticks left (1 means the next tick), or {@link #SAFE}
+     */
+    public int getTurnsUntilBlast(int x, int y, int currentTurn) {
+        int turn = getBlastTurn(x, y);
+        return turn == SAFE ? SAFE : turn - currentTurn + 1;
+    }
+
+    /** @return the number of cells a pending blast will reach */
+    public int getDangerousCellCount() {
+        if (pendingCount > 0 || !pendingBombs.isEmpty()) flush();
+        return size;
+    }
+
+    // ---------------- Incremental update ----------------
+
+    private void markCell(int x, int y) {
+        if (pendingCount == pendingCells.length) pendingCells = Arrays.copyOf(pendingCells, pendingCount * 2);
+        pendingCells[pendingCount++] = cell(x, y);
+    }
+
+    /**
+     * Brings the map up to date with everything marked since the last lookup.
+     */
+    private void flush() {
+        // 1. Bombs that may be reached by, or reach, a change, and every bomb
+        //    their blasts reach in turn: only these can change blast turn.
+        for (Bomb b : pendingBombs) {
+            if (!b.isDetonated() && affected.add(b)) work.add(b);
+        }
+        for (int i = 0; i < pendingCount; i++) {
+            collectCross(cellX(pendingCells[i]), cellY(pendingCells[i]), maxRange);
+        }
+        while (!work.isEmpty()) {
+            Bomb b = work.poll();
+            collectCross(b.getX(), b.getY(), b.getRange());
+        }
+
+        // 2. Start them from their own fuses or the bombs outside the set
+        //    that reach them, then pass earlier turns along their blasts.
+        for (Bomb b : affected) {
+            b.blastTurn = Math.min(b.getDueTurn(), reachingTurn(b.getX(), b.getY(), true));
+            work.add(b);
+        }
+        while (!work.isEmpty()) {
+            Bomb b = work.poll();
+            for (int d = 0; d < 4; d++) {
+                for (int i = 1; i <= b.getRange(); i++) {
+                    int x = b.getX() + DX[d] * i, y = b.getY() + DY[d] * i;
+                    if (x < 0 || y < 0 || x >= level.getWidth() || y >= level.getHeight()) break;
+                    Bomb hit = occupancy.bombAt(x, y);
+                    if (hit != null && affected.contains(hit) && hit.blastTurn > b.blastTurn) {
+                        hit.blastTurn = b.blastTurn;
+                        work.add(hit);
+                    }
+                    if (blocks(x, y)) break;
+                }
+            }
+        }
+
+        // 3. Recompute the cells around every change and every affected bomb.
+        for (int i = 0; i < pendingCount; i++) {
+            refreshCross(cellX(pendingCells[i]), cellY(pendingCells[i]), maxRange);
+        }
+        for (Bomb b : affected) {
+            refreshCross(b.getX(), b.getY(), b.getRange());
+        }
+
+        affected.clear();
+        pendingBombs.clear();
+        pendingCount = 0;
+    }
+
+    /** Adds the live bombs within range of a cell, along its row and column, to the affected set. */
+    private void collectCross(int cx, int cy, int range) {
+        collect(cx, cy);
+        for (int d = 0; d < 4; d++) {
+            for (int i = 1; i <= range; i++) collect(cx + DX[d] * i, cy + DY[d] * i);
+        }
+    }
+
+    private void collect(int x, int y) {
+        if (x < 0 || y < 0 || x >= level.getWidth() || y >= level.getHeight()) return;
+        Bomb b = occupancy.bombAt(x, y);
+        if (b != null && !b.isDetonated() && affected.add(b)) work.add(b);
+    }
+
+    /** Recomputes the danger of a cell and the cells in range of it along its row and column. */
+    private void refreshCross(int cx, int cy, int range) {
+        refresh(cx, cy);
+        for (int d = 0; d < 4; d++) {
+            for (int i = 1; i <= range; i++) refresh(cx + DX[d] * i, cy + DY[d] * i);
+        }
+    }
+
+    private void refresh(int x, int y) {
+        if (x < 0 || y < 0 || x >= level.getWidth() || y >= level.getHeight()) return;
+        int turn = reachingTurn(x, y, false);
+        if (turn == SAFE) remove(cell(x, y));
+        else put(cell(x, y), turn);
+    }
+
+    /**
+     * Finds the earliest blast turn among the live bombs whose blast reaches
+     * a cell, walking out from the cell until a wall would stop a blast.
+     *
+     * @param outsideOnly whether to skip bombs in the affected set
+     */
+    private int reachingTurn(int x, int y, boolean outsideOnly) {
+        int best = SAFE;
+        Bomb here = occupancy.bombAt(x, y);
+        if (here != null && !outsideOnly && !here.isDetonated()) best = here.blastTurn;
+        for (int d = 0; d < 4; d++) {
+            for (int i = 1; i <= maxRange; i++) {
+                int nx = x + DX[d] * i, ny = y + DY[d] * i;
+                if (nx < 0 || ny < 0 || nx >= level.getWidth() || ny >= level.getHeight()) break;
+                if (blocks(nx, ny)) break;
+                Bomb b = occupancy.bombAt(nx, ny);
+                if (b != null && b.getRange() >= i && !b.isDetonated()
+                        && !(outsideOnly && affected.contains(b))) {
+                    best = Math.min(best, b.blastTurn);
+                }
+            }
+        }
+        return best;
+    }
+
+    /** @return whether a wall on the cell stops a blast going past it */
+    private boolean blocks(int x, int y) {
+        Tile.Type t = level.getType(x, y);
+        return t == Tile.Type.HARD_WALL || t == Tile.Type.SOFT_WALL;
+    }
+
+    // ---------------- Table internals ----------------
+
+    private long cell(int x, int y) {
+        return y * width + x;
+    }
+
+    private int cellX(long c) {
+        return (int) (c % width);
+    }
+
+    private int cellY(long c) {
+        return (int) (c / width);
+    }
+
+    private int slotOf(long c) {
+        long h = c * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (keys.length - 1);
+    }
+
+    /** @return the table slot holding a cell, or -1 if the cell is safe */
+    private int find(long c) {
+        int mask = keys.length - 1;
+        for (int s = slotOf(c); keys[s] != EMPTY; s = (s + 1) & mask) {
+            if (keys[s] == c) return s;
+        }
+        return -1;
+    }
+
+    private void put(long c, int turn) {
+        int s = find(c);
+        if (s >= 0) {
+            turns[s] = turn;
+            return;
+        }
+        if ((size + 1) * 2 > keys.length) rehash(keys.length * 2);
+        int mask = keys.length - 1;
+        s = slotOf(c);
+        while (keys[s] != EMPTY) s = (s + 1) & mask;
+        keys[s] = c;
+        turns[s] = turn;
+        size++;
+    }
+
+    /** Empties a cell's slot, shifting later entries of the probe run back into place. */
+    private void remove(long c) {
+        int s = find(c);
+        if (s < 0) return;
+        int mask = keys.length - 1;
+        keys[s] = EMPTY;
+        size--;
+        for (int i = (s + 1) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+            int home = slotOf(keys[i]);
+            // move entry i into the hole if its home slot is not between the hole and i
+            if (((i - home) & mask) >= ((i - s) & mask)) {
+                keys[s] = keys[i];
+                turns[s] = turns[i];
+                keys[i] = EMPTY;
+                s = i;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldTurns = turns;
+        keys = new long[capacity];
+        turns = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) put(oldKeys[i], oldTurns[i]);
+        }
+    }
+}
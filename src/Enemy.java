@@ -15,8 +15,8 @@ import java.io.Serializable;
  * {@link Wraith}, and {@link Charger}.
  *
  * All subclasses must implement the {@link #update(Level, Player)} method,
- * which defines how the enemy behaves on each game turn (e.g., random movement,
- * chasing the player, or patrolling).
+ * which defines how the enemy behaves on each game turn (e.g., random movement
+ * drawn from {@link #nextRandom(int)}, chasing the player, or patrolling).
  *
  */
 public abstract class Enemy extends Entity implements Movable, Serializable {
@@ -27,6 +27,9 @@ public abstract class Enemy extends Entity implements Movable, Serializable {
     /** Indicates whether this enemy has been defeated or destroyed. */
     protected boolean dead;
 
+    /** State of this enemy's random stream; see {@link Rng}. */
+    private long rng;
+
     /**
      * Constructs a new {@code Enemy} at the specified coordinates.
      *
@@ -47,6 +50,44 @@ public abstract class Enemy extends Entity implements Movable, Serializable {
      */
     public abstract void update(Level level, Player player);
 
+    /**
+     * Defines the enemy’s behavior for a game turn when a shared
+     * {@link FlowField} towards the player is available. Enemies that do not
+     * chase the player ignore the field.
+     *
+     * @param level  the {@link Level} in which the enemy exists
+     * @param player the {@link Player} instance
+     * @param field  distances to the player, or {@code null} if none was computed
+     */
+    public void update(Level level, Player player, FlowField field) {
+        update(level, player);
+    }
+
+    /**
+     * Defines the enemy’s behavior for a game turn on a level too large for a
+     * {@link FlowField}, where chasers find their own way to the player with
+     * the game's {@link HierarchicalPathfinder}. Enemies that do not chase
+     * the player ignore it.
+     *
+     * @param level  the {@link Level} in which the enemy exists
+     * @param player the {@link Player} instance
+     * @param finder the pathfinder for this level
+     */
+    public void update(Level level, Player player, HierarchicalPathfinder finder) {
+        update(level, player);
+    }
+
+    /**
+     * Tells the game whether this enemy reads the {@link FlowField} or the
+     * {@link HierarchicalPathfinder}, so they are only used on turns where
+     * someone needs them.
+     *
+     * @return {@code true} if this enemy chases the player
+     */
+    public boolean chasesPlayer() {
+        return false;
+    }
+
     /**
      * Moves the enemy by the given offset if the destination tile is walkable.
      * Prevents movement through walls and invalid positions.
@@ -65,6 +106,32 @@ public abstract class Enemy extends Entity implements Movable, Serializable {
         }
     }
 
+    /**
+     * Starts this enemy's random stream. {@link GameState} calls this with a
+     * stream of the game seed, so random behaviour replays exactly.
+     *
+     * @param state the initial stream state, from {@link Rng#stream}
+     */
+    void seedRandom(long state) {
+        this.rng = state;
+    }
+
+    /** @return the current state of this enemy's random stream, for saving */
+    long getRandomState() {
+        return rng;
+    }
+
+    /**
+     * Draws the next number from this enemy's random stream.
+     *
+     * @param bound the upper bound (exclusive), positive
+     * @return a number from 0 to {@code bound - 1}
+     */
+    protected int nextRandom(int bound) {
+        rng = Rng.next(rng);
+        return Rng.bounded(rng, bound);
+    }
+
     /**
      * Checks if this enemy has been defeated (e.g., by an explosion).
      *
@@ -86,4 +153,22 @@ public abstract class Enemy extends Entity implements Movable, Serializable {
     public char getLogo(){
         return logo;
     }
+
+    /**
+     * Creates an enemy from its map logo, as stored in level and save files.
+     *
+     * @param logo the enemy logo ({@code 'H'}, {@code 'C'} or {@code 'W'})
+     * @param x the X-coordinate where the enemy spawns
+     * @param y the Y-coordinate where the enemy spawns
+     * @return a new enemy of the matching subclass
+     * @throws IllegalArgumentException if the logo is unknown
+     */
+    public static Enemy fromLogo(char logo, int x, int y) {
+        switch (logo) {
+            case 'H': return new Shadowling(x, y);
+            case 'C': return new Charger(x, y);
+            case 'W': return new Wraith(x, y);
+            default: throw new IllegalArgumentException("Unknown enemy logo: " + logo);
+        }
+    }
 }
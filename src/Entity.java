@@ -18,6 +18,15 @@ public abstract class Entity implements Serializable {
     /** Y-coordinate on the map grid. */
     protected int y;
 
+    /** The {@link OccupancyIndex} tracking this entity, if any. */
+    transient OccupancyIndex index;
+
+    /** This entity's id within {@link #index}. */
+    transient int indexId = OccupancyIndex.NONE;
+
+    /** The last {@link EntitySnapshot} of this entity, shared until it moves. */
+    transient EntitySnapshot frozen;
+
     /**
      * Constructs an {@code Entity} at the given coordinates.
      *
@@ -40,7 +49,7 @@ public abstract class Entity implements Serializable {
     }
 
     /**
-     * Updates the entity’s position.
+     * Updates the entity’s position, keeping its {@link OccupancyIndex} in step.
      *
      * @param x new X-coordinate
      * @param y new Y-coordinate
@@ -48,5 +57,9 @@ public abstract class Entity implements Serializable {
     public void setPosition(int x, int y) {
         this.x = x;
         this.y = y;
+        frozen = null;
+        if (index != null) {
+            index.moved(this);
+        }
     }
 }
@@ -0,0 +1,292 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * EntityGrid.java
+ *
+ * An immutable spatial index over {@link EntitySnapshot}s, answering "which
+ * entities are inside this rectangle?" by looking only at the
+ * {@link #BUCKET} x {@link #BUCKET} tile buckets the rectangle overlaps.
+ *
+ * Only occupied buckets are stored, each as a small array of its entities,
+ * spread by a hash of their position over a directory of pages that hold a
+ * few buckets each. The grid therefore costs memory per entity, not per
+ * tile, like {@link OccupancyIndex}, and a query costs the buckets it covers
+ * plus the entities in them, however many entities the level holds.
+ *
+ * Each grid after the first is made from the one before with
+ * {@link #update}: only the buckets that the {@link OccupancyIndex} change
+ * log says an entity left or entered are frozen again, and only the pages
+ * holding them are copied. Every other bucket and page is shared, so like a
+ * {@link TileSnapshot} the cost follows what changed, plus one copy of the
+ * small directory.
+ *
+ */
+public final class EntityGrid {
+
+    /** Side of a bucket, in tiles. */
+    public static final int BUCKET = 16;
+    private static final int BUCKET_BITS = 4;
+
+    /** Buckets per page the directory is sized for; it grows at twice this. */
+    private static final int PAGE_LOAD = 8;
+
+    private static final EntitySnapshot[] NO_ENTITIES = {};
+    private static final int[] NO_IDS = {};
+
+    /** Occupied buckets by page; {@code null} for a page with none. Never modified once published. */
+    private final Page[] pages;
+    private final int bucketCount;
+    private final int size;
+
+    /**
+     * Some occupied buckets: their keys, their entities, and the
+     * {@link OccupancyIndex} id of each entity, in unsorted parallel arrays.
+     */
+    private static final class Page {
+        long[] keys;
+        EntitySnapshot[][] entities;
+        int[][] ids;
+        int count;
+
+        Page(int capacity) {
+            keys = new long[capacity];
+            entities = new EntitySnapshot[capacity][];
+            ids = new int[capacity][];
+        }
+
+        /** @return a copy that can be changed without touching this page */
+        Page copy() {
+            Page p = new Page(keys.length);
+            System.arraycopy(keys, 0, p.keys, 0, count);
+            System.arraycopy(entities, 0, p.entities, 0, count);
+            System.arraycopy(ids, 0, p.ids, 0, count);
+            p.count = count;
+            return p;
+        }
+
+        /** @return the slot of a bucket, or -1 if this page does not hold it */
+        int find(long key) {
+            for (int i = 0; i < count; i++) {
+                if (keys[i] == key) return i;
+            }
+            return -1;
+        }
+
+        void add(long key, EntitySnapshot[] e, int[] id) {
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                entities = Arrays.copyOf(entities, count * 2);
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            keys[count] = key;
+            entities[count] = e;
+            ids[count] = id;
+            count++;
+        }
+
+        void remove(int slot) {
+            count--;
+            keys[slot] = keys[count];
+            entities[slot] = entities[count];
+            ids[slot] = ids[count];
+            entities[count] = null;
+            ids[count] = null;
+        }
+    }
+
+    private EntityGrid(Page[] pages, int bucketCount, int size) {
+        this.pages = pages;
+        this.bucketCount = bucketCount;
+        this.size = size;
+    }
+
+    /**
+     * Indexes a list of entities as they are now. Each must be in an
+     * {@link OccupancyIndex}, whose change log later grids are updated from.
+     *
+     * @param entities the entities to index
+     * @return a grid of their snapshots
+     */
+    public static EntityGrid of(List<? extends Entity> entities) {
+        int n = entities.size();
+        long[] order = new long[n];
+        for (int i = 0; i < n; i++) {
+            Entity e = entities.get(i);
+            order[i] = bucketOf(e.getX(), e.getY()) << 32 | i;
+        }
+        Arrays.sort(order);
+
+        int buckets = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || order[i] >>> 32 != order[i - 1] >>> 32) buckets++;
+        }
+        Page[] pages = new Page[directorySize(buckets)];
+        for (int i = 0, end; i < n; i = end) {
+            long key = order[i] >>> 32;
+            end = i + 1;
+            while (end < n && order[end] >>> 32 == key) end++;
+            EntitySnapshot[] e = new EntitySnapshot[end - i];
+            int[] id = new int[end - i];
+            for (int j = i; j < end; j++) {
+                Entity entity = entities.get((int) order[j]);
+                e[j - i] = EntitySnapshot.of(entity);
+                id[j - i] = entity.indexId;
+            }
+            put(pages, key, e, id);
+        }
+        return new EntityGrid(pages, buckets, n);
+    }
+
+    /**
+     * Makes the grid of the entities of one kind as they are now, from this
+     * grid and the changes the index logged since this grid was made. Only
+     * buckets that a changed entity left or entered are frozen again.
+     *
+     * @param index the index of every entity, with its change log since this grid
+     * @param kind  the kind of entity this grid holds
+     * @return the new grid, or this grid if nothing changed
+     */
+    public EntityGrid update(OccupancyIndex index, Class<? extends Entity> kind) {
+        int n = index.getChangeCount();
+        if (n == 0) return this;
+
+        // Buckets left and entered, and the entities entering them, by bucket
+        long[] touched = new long[2 * n];
+        long[] entering = new long[n];
+        int touchedCount = 0, enteringCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (index.wasIndexed(i)) touched[touchedCount++] = bucketOf(index.getFormerX(i), index.getFormerY(i));
+            int id = index.getChangedId(i);
+            Entity e = index.get(id);
+            if (kind.isInstance(e)) {
+                long key = bucketOf(e.getX(), e.getY());
+                touched[touchedCount++] = key;
+                entering[enteringCount++] = key << 32 | id;
+            }
+        }
+        Arrays.sort(touched, 0, touchedCount);
+        Arrays.sort(entering, 0, enteringCount);
+
+        Page[] next = pages.clone();
+        int buckets = bucketCount, total = size;
+        int in = 0, refrozen = 0;
+        for (int t = 0; t < touchedCount; t++) {
+            long key = touched[t];
+            if (t > 0 && key == touched[t - 1]) continue;
+            int p = pageOf(key, next.length);
+            Page page = next[p];
+            int slot = page == null ? -1 : page.find(key);
+            EntitySnapshot[] oldEntities = slot < 0 ? NO_ENTITIES : page.entities[slot];
+            int[] oldIds = slot < 0 ? NO_IDS : page.ids[slot];
+
+            int kept = 0;
+            for (int id : oldIds) {
+                if (!index.isChanged(id)) kept++;
+            }
+            int from = in;
+            while (in < enteringCount && entering[in] >>> 32 == key) in++;
+            if (kept == oldIds.length && in == from) continue; // e.g. the player left it
+
+            int count = kept + in - from;
+            EntitySnapshot[] e = new EntitySnapshot[count];
+            int[] id = new int[count];
+            int k = 0;
+            for (int j = 0; j < oldIds.length; j++) {
+                if (index.isChanged(oldIds[j])) continue;
+                e[k] = oldEntities[j];
+                id[k++] = oldIds[j];
+            }
+            for (int j = from; j < in; j++) {
+                int entered = (int) entering[j];
+                e[k] = EntitySnapshot.of(index.get(entered));
+                id[k++] = entered;
+            }
+
+            if (page == null) page = next[p] = new Page(4);
+            else if (page == pages[p]) page = next[p] = page.copy();
+            if (slot >= 0) {
+                if (count == 0) {
+                    page.remove(slot);
+                    buckets--;
+                } else {
+                    page.entities[slot] = e;
+                    page.ids[slot] = id;
+                }
+            } else {
+                page.add(key, e, id);
+                buckets++;
+            }
+            total += count - oldIds.length;
+            refrozen++;
+        }
+        if (refrozen == 0) return this;
+
+        if (buckets > next.length * PAGE_LOAD * 2) next = rehash(next, buckets);
+        return new EntityGrid(next, buckets, total);
+    }
+
+    /**
+     * Visits the entities whose tile lies inside a rectangle.
+     *
+     * @param x0  the leftmost tile column, inclusive
+     * @param y0  the top tile row, inclusive
+     * @param x1  the rightmost tile column, exclusive
+     * @param y1  the bottom tile row, exclusive
+     * @param out called for each entity inside
+     */
+    public void forEachIn(int x0, int y0, int x1, int y1, Consumer<EntitySnapshot> out) {
+        if (size == 0 || x0 >= x1 || y0 >= y1) return;
+        for (int by = y0 >> BUCKET_BITS; by <= (y1 - 1) >> BUCKET_BITS; by++) {
+            for (int bx = x0 >> BUCKET_BITS; bx <= (x1 - 1) >> BUCKET_BITS; bx++) {
+                long key = key(bx, by);
+                Page page = pages[pageOf(key, pages.length)];
+                int s = page == null ? -1 : page.find(key);
+                if (s < 0) continue;
+                for (EntitySnapshot e : page.entities[s]) {
+                    if (e.getX() >= x0 && e.getY() >= y0 && e.getX() < x1 && e.getY() < y1) out.accept(e);
+                }
+            }
+        }
+    }
+
+    /** @return the number of entities indexed */
+    public int size() {
+        return size;
+    }
+
+    private static long bucketOf(int x, int y) {
+        return key(x >> BUCKET_BITS, y >> BUCKET_BITS);
+    }
+
+    /** Packs bucket coordinates (each under 2^15 buckets, i.e. levels up to 2^19 tiles a side). */
+    private static long key(int bx, int by) {
+        return (long) by << 15 | bx;
+    }
+
+    /** @return a power of two of pages holding about {@link #PAGE_LOAD} buckets each */
+    private static int directorySize(int buckets) {
+        return Integer.highestOneBit(Math.max(1, buckets / PAGE_LOAD)) * 2;
+    }
+
+    private static int pageOf(long key, int pageCount) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & (pageCount - 1);
+    }
+
+    private static void put(Page[] pages, long key, EntitySnapshot[] e, int[] id) {
+        int p = pageOf(key, pages.length);
+        if (pages[p] == null) pages[p] = new Page(4);
+        pages[p].add(key, e, id);
+    }
+
+    /** Spreads the buckets over a larger directory; the bucket arrays themselves are shared. */
+    private static Page[] rehash(Page[] old, int buckets) {
+        Page[] pages = new Page[directorySize(buckets)];
+        for (Page page : old) {
+            if (page == null) continue;
+            for (int i = 0; i < page.count; i++) put(pages, page.keys[i], page.entities[i], page.ids[i]);
+        }
+        return pages;
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * EntitySnapshot.java
+ *
+ * An immutable record of one entity's kind and position (and, for bombs,
+ * fuse, timer and range) at the moment a {@link StateSnapshot} was taken.
+ *
+ * Each entity keeps its last snapshot until it moves, so successive game
+ * snapshots share the same record for every entity that stood still instead
+ * of copying it.
+ *
+ */
+public final class EntitySnapshot {
+
+    private final Class<? extends Entity> type;
+    private final char logo;
+    private final int x;
+    private final int y;
+    private final int dueTurn;
+    private final int timer;
+    private final int range;
+
+    private EntitySnapshot(Entity e) {
+        this.type = e.getClass();
+        this.x = e.getX();
+        this.y = e.getY();
+        if (e instanceof Bomb) {
+            Bomb b = (Bomb) e;
+            this.logo = 'B';
+            this.dueTurn = b.getDueTurn();
+            this.timer = b.getTimer();
+            this.range = b.getRange();
+        } else {
+            this.logo = e instanceof Enemy ? ((Enemy) e).getLogo() : 'P';
+            this.dueTurn = 0;
+            this.timer = 0;
+            this.range = 0;
+        }
+    }
+
+    /**
+     * Gets the snapshot of an entity as it is now, reusing its last one if it
+     * has not moved since.
+     *
+     * @param e the entity
+     * @return an immutable record of the entity
+     */
+    public static EntitySnapshot of(Entity e) {
+        EntitySnapshot s = e.frozen;
+        if (s == null || s.x != e.getX() || s.y != e.getY()) {
+            s = new EntitySnapshot(e);
+            e.frozen = s;
+        }
+        return s;
+    }
+
+    /** @return the class of the entity */
+    public Class<? extends Entity> getType() {
+        return type;
+    }
+
+    /** @return the enemy's map logo, {@code 'B'} for bombs or {@code 'P'} for the player */
+    public char getLogo() {
+        return logo;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    /** @return the turn a bomb goes off on, or 0 for other entities */
+    public int getDueTurn() {
+        return dueTurn;
+    }
+
+    /** @return a bomb's fuse length in turns, or 0 for other entities */
+    public int getTimer() {
+        return timer;
+    }
+
+    /** @return a bomb's blast radius, or 0 for other entities */
+    public int getRange() {
+        return range;
+    }
+}
@@ -19,6 +19,9 @@ import java.io.Serializable;
 public class Explosion extends Entity implements Serializable {
     private static final long serialVersionUID = 1L;
 
+    /** Number of turns a blast stays visible by default. */
+    public static final int DEFAULT_DURATION = 1;
+
     /** The duration (in turns) before the explosion disappears. */
     private int duration;
 
@@ -31,7 +34,7 @@ public class Explosion extends Entity implements Serializable {
      */
     public Explosion(int x, int y) {
         super(x, y);
-        this.duration = 1;
+        this.duration = DEFAULT_DURATION;
     }
 
     /**
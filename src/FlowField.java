@@ -0,0 +1,327 @@
+import java.util.Arrays;
+
+/**
+ * FlowField.java
+ *
+ * Distance field over a {@link Level} that tells chasing enemies how to reach
+ * the player. One breadth-first search from the player's cell fills in, for
+ * every walkable cell, the number of steps to the player; an enemy then picks
+ * its next step in O(1) by moving to a neighbour one step closer.
+ *
+ * The search runs once per game tick and is shared by every chaser, so a
+ * thousand {@link Wraith}s cost about the same as one, and chasers walk around
+ * the hard wall pillars instead of getting stuck on them.
+ *
+ * When a tile changes (e.g., a bomb destroys a soft wall) the field is repaired
+ * in place rather than recomputed: cells whose only shortest routes ran through
+ * a newly blocked tile are invalidated, and distances are re-propagated from the
+ * edge of the change and from newly opened tiles, so the work tracks the size
+ * of the affected area instead of the map.
+ *
+ * Moving the target is not repaired locally. After a one-cell move every
+ * distance changes by -1, 0 or +1, and on open ground about half of them
+ * change, so no re-propagation could touch fewer cells than the map;
+ * {@link #update} runs a full search instead. In normal play the player moves
+ * on most ticks, so on those ticks the cost is still O(cells): the repair only
+ * saves work on ticks where tiles change while the player stands still, e.g.
+ * waiting out a bomb. Cheap player moves would need a different field, such
+ * as one rooted at a point that follows the player only every few cells.
+ *
+ * Distances and the search queue are flat arrays with a one-cell blocked
+ * border around the level, so searches step to a neighbour by adding an
+ * offset, with no bounds checks or divisions. Blocked cells hold a negative
+ * distance, so the search makes a single test per neighbour. The field is only
+ * built for levels up to {@link #MAX_CELLS} cells.
+ *
+ */
+public class FlowField implements Level.TileListener {
+
+    /** Largest level, in cells, a field is built for (about 48 MB of arrays). */
+    public static final long MAX_CELLS = 1L << 22;
+
+    /** Distance of cells that cannot reach the target. */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /** Stored distance of cells that cannot be walked on. */
+    private static final int BLOCKED = -1;
+
+    /** Step offsets in the four cardinal directions. */
+    private static final int[] DX = { 1, -1, 0, 0 };
+    private static final int[] DY = { 0, 0, 1, -1 };
+
+    private final Level level;
+    private final int width;
+    private final int height;
+
+    /** Row length of the padded arrays: the level width plus a border cell each side. */
+    private final int stride;
+
+    /** Padded-array offsets of the four neighbours, in {@link #DX} order. */
+    private final int[] step;
+
+    /** Steps from each cell to the target, row-major with a border, or {@link #BLOCKED}. */
+    private final int[] dist;
+
+    /** {@link #dist} before a search: {@link #UNREACHABLE} where walkable, else {@link #BLOCKED}. */
+    private final int[] blank;
+
+    /** BFS queue of padded cell numbers. */
+    private final int[] queue;
+
+    /** Target of the last search, or -1 before the first. */
+    private int targetX = -1;
+    private int targetY = -1;
+
+    /** Cells changed since the field was last brought up to date. */
+    private int[] pending = new int[16];
+    private int pendingCount;
+
+    /** Scratch lists for {@link #repair()}, grown as needed. */
+    private int[] stale = new int[16];
+    private int[] staleDist = new int[16];
+    private long[] seeds = new long[16];
+
+    /**
+     * Constructs an empty field for a level. Call {@link #compute} before use.
+     *
+     * @param level the level to search
+     */
+    public FlowField(Level level) {
+        this.level = level;
+        this.width = level.getWidth();
+        this.height = level.getHeight();
+        this.stride = width + 2;
+        this.step = new int[] { 1, -1, stride, -stride };
+        int cells = stride * (height + 2);
+        this.dist = new int[cells];
+        this.blank = new int[cells];
+        this.queue = new int[cells];
+        Arrays.fill(blank, BLOCKED);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (level.isWalkable(x, y)) blank[cell(x, y)] = UNREACHABLE;
+            }
+        }
+        System.arraycopy(blank, 0, dist, 0, cells);
+        level.addTileListener(this);
+    }
+
+    /**
+     * Stops listening for tile changes once the field is no longer needed.
+     */
+    public void detach() {
+        level.removeTileListener(this);
+    }
+
+    @Override
+    public void tileChanged(int x, int y, Tile.Type type) {
+        int c = cell(x, y);
+        blank[c] = level.isWalkable(x, y) ? UNREACHABLE : BLOCKED;
+        if (pendingCount == pending.length) pending = Arrays.copyOf(pending, pendingCount * 2);
+        pending[pendingCount++] = c;
+    }
+
+    /**
+     * Brings the field up to date for a target: a full search if the target
+     * moved (or there are very many changes), otherwise a local repair of the
+     * tiles changed since the last update.
+     *
+     * @param tx X-coordinate of the target (usually the player)
+     * @param ty Y-coordinate of the target
+     */
+    public void update(int tx, int ty) {
+        if (tx != targetX || ty != targetY || pendingCount > dist.length / 8) {
+            compute(tx, ty);
+        } else if (pendingCount > 0) {
+            repair();
+        }
+    }
+
+    /**
+     * Checks whether a level is small enough for a flow field.
+     *
+     * @param level the level to check
+     * @return {@code true} if {@link #FlowField(Level)} may be used on it
+     */
+    public static boolean fits(Level level) {
+        return (long) level.getWidth() * level.getHeight() <= MAX_CELLS;
+    }
+
+    /**
+     * Recomputes every distance with a breadth-first search from the target
+     * over walkable tiles.
+     *
+     * @param tx X-coordinate of the target (usually the player)
+     * @param ty Y-coordinate of the target
+     */
+    public void compute(int tx, int ty) {
+        targetX = tx;
+        targetY = ty;
+        pendingCount = 0;
+        System.arraycopy(blank, 0, dist, 0, dist.length);
+        int head = 0, tail = 0;
+        int start = cell(tx, ty);
+        dist[start] = 0;
+        queue[tail++] = start;
+        while (head < tail) {
+            int c = queue[head++];
+            int nd = dist[c] + 1;
+            for (int d = 0; d < 4; d++) {
+                int n = c + step[d];
+                if (dist[n] == UNREACHABLE) {
+                    dist[n] = nd;
+                    queue[tail++] = n;
+                }
+            }
+        }
+    }
+
+    /**
+     * Repairs the distances around the pending tile changes, assuming the
+     * target has not moved.
+     */
+    private void repair() {
+        int staleCount = 0, seedCount = 0;
+
+        // 1. Newly blocked cells lose their distance; so does every cell that
+        //    has no other neighbour one step closer to the target. The stale
+        //    list doubles as the queue for this pass.
+        for (int i = 0; i < pendingCount; i++) {
+            int c = pending[i];
+            if (blank[c] == BLOCKED) {
+                if (dist[c] >= 0 && dist[c] != UNREACHABLE) staleCount = invalidate(c, staleCount);
+                dist[c] = BLOCKED;
+            } else if (dist[c] == BLOCKED) {
+                dist[c] = UNREACHABLE;
+            }
+        }
+        for (int i = 0; i < staleCount; i++) {
+            int c = stale[i], old = staleDist[i];
+            for (int d = 0; d < 4; d++) {
+                int n = c + step[d];
+                if (dist[n] == old + 1 && !supported(n)) {
+                    staleCount = invalidate(n, staleCount);
+                }
+            }
+        }
+
+        // 2. Invalidated cells and newly opened cells restart from their best
+        //    neighbour that still has a distance.
+        for (int i = 0; i < staleCount + pendingCount; i++) {
+            int c = i < staleCount ? stale[i] : pending[i - staleCount];
+            if (blank[c] == BLOCKED) continue;
+            int best = bestNeighbour(c);
+            if (best != UNREACHABLE && best + 1 < dist[c]) {
+                dist[c] = best + 1;
+                if (seedCount == seeds.length) seeds = Arrays.copyOf(seeds, seedCount * 2);
+                seeds[seedCount++] = ((long) dist[c] << 32) | c;
+            }
+        }
+        pendingCount = 0;
+
+        // 3. Breadth-first propagation from the seeds, merged in distance order
+        //    so each cell settles once.
+        Arrays.sort(seeds, 0, seedCount);
+        int head = 0, tail = 0, si = 0;
+        while (head < tail || si < seedCount) {
+            int c;
+            if (head < tail && (si == seedCount || dist[queue[head]] <= (int) (seeds[si] >>> 32))) {
+                c = queue[head++];
+            } else {
+                long sd = seeds[si++];
+                c = (int) sd;
+                if (dist[c] != (int) (sd >>> 32)) continue; // improved since it was seeded
+            }
+            int nd = dist[c] + 1;
+            for (int d = 0; d < 4; d++) {
+                int n = c + step[d];
+                if (dist[n] > nd) {
+                    dist[n] = nd;
+                    queue[tail++] = n;
+                }
+            }
+        }
+    }
+
+    /** Forgets the distance of cell c, remembering it in the stale list. */
+    private int invalidate(int c, int staleCount) {
+        if (staleCount == stale.length) {
+            stale = Arrays.copyOf(stale, staleCount * 2);
+            staleDist = Arrays.copyOf(staleDist, staleCount * 2);
+        }
+        stale[staleCount] = c;
+        staleDist[staleCount] = dist[c];
+        dist[c] = UNREACHABLE;
+        return staleCount + 1;
+    }
+
+    /** @return whether cell c still has a neighbour one step closer to the target */
+    private boolean supported(int c) {
+        int want = dist[c] - 1;
+        for (int d = 0; d < 4; d++) {
+            if (dist[c + step[d]] == want) return true;
+        }
+        return false;
+    }
+
+    /** @return the smallest known distance among the neighbours of cell c */
+    private int bestNeighbour(int c) {
+        int best = UNREACHABLE;
+        for (int d = 0; d < 4; d++) {
+            int n = dist[c + step[d]];
+            if (n != BLOCKED) best = Math.min(best, n);
+        }
+        return best;
+    }
+
+    /** @return the padded-array number of an in-bounds cell */
+    private int cell(int x, int y) {
+        return (y + 1) * stride + x + 1;
+    }
+
+    /**
+     * Gets the number of steps from a cell to the target.
+     *
+     * @param x the X-coordinate of the cell
+     * @param y the Y-coordinate of the cell
+     * @return the distance, or {@link #UNREACHABLE}
+     */
+    public int distance(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return UNREACHABLE;
+        int d = dist[cell(x, y)];
+        return d == BLOCKED ? UNREACHABLE : d;
+    }
+
+    /**
+     * Picks the direction that brings a cell one step closer to the target.
+     *
+     * @param x the X-coordinate of the cell
+     * @param y the Y-coordinate of the cell
+     * @return a direction index for {@link #dx(int)} / {@link #dy(int)},
+     *         or -1 if the cell is the target or cannot reach it
+     */
+    public int nextStep(int x, int y) {
+        int here = distance(x, y);
+        if (here == 0 || here == UNREACHABLE) return -1;
+        for (int d = 0; d < 4; d++) {
+            if (distance(x + DX[d], y + DY[d]) == here - 1) return d;
+        }
+        return -1;
+    }
+
+    /**
+     * @param dir a direction index from {@link #nextStep}
+     * @return the X offset of that direction
+     */
+    public static int dx(int dir) {
+        return DX[dir];
+    }
+
+    /**
+     * @param dir a direction index from {@link #nextStep}
+     * @return the Y offset of that direction
+     */
+    public static int dy(int dir) {
+        return DY[dir];
+    }
+}
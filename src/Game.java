@@ -1,4 +1,5 @@
 import java.io.*;
+import java.nio.file.Path;
 import java.util.*;
 
 /**
@@ -16,27 +17,96 @@ public class Game {
     private boolean gameOver;
     private boolean victory;
 
+    /** Cells blasted during the current tick, reused so detonations don't allocate. */
+    private final BlastBuffer blast = new BlastBuffer();
+
+    /** Bombs waiting to explode in the current tick's chain reaction. */
+    private final ArrayDeque<Bomb> cascade = new ArrayDeque<>();
+
+    /** Timed events that fell due this tick, reused between ticks. */
+    private final List<Bomb> dueBombs = new ArrayList<>();
+    private final List<BlastBuffer> burntOut = new ArrayList<>();
+
+    /** Blast buffers that burned out, kept for reuse. */
+    private final ArrayDeque<BlastBuffer> spareBlasts = new ArrayDeque<>();
+
+    /** Distances to the player shared by chasing enemies; built on first use. */
+    private FlowField chaseField;
+
+    /** What last cost the player a life: {@link Bomb} or an enemy class. */
+    private Class<? extends Entity> lastHitBy;
+
+    /** Number of bombs the player has placed this game. */
+    private int bombsPlaced;
+
+    /** Long-range paths for enemies with goals of their own; built on first use. */
+    private HierarchicalPathfinder pathfinder;
+
     /**
      * Constructs a new Game instance and initializes the level and entities.
      */
     public Game() {
-        initialize();
+        this(new Level(13, 11));
     }
 
     /**
-     * Sets up the map, player, enemies, and empty bomb lists.
+     * Constructs a new Game on a default-sized level generated from a seed.
+     * The enemies' random streams come from the same seed, so the same seed
+     * and inputs always play out the same game.
+     *
+     * @param seed the game seed
+     */
+    public Game(long seed) {
+        this(new Level(13, 11, seed));
+    }
+
+    /**
+     * Constructs a new Game played on the given level, such as a
+     * {@link ChunkedLevel} for maps far larger than the default 13x11.
+     *
+     * @param level the level to play on
+     */
+    public Game(Level level) {
+        this(level, new Player(1, 1), defaultEnemies());
+    }
+
+    /**
+     * Constructs a new Game with explicit spawns, such as those read from a
+     * {@link MappedLevel} file.
+     *
+     * @param level   the level to play on
+     * @param player  the player at its spawn point
+     * @param enemies the enemies at their spawn points
+     */
+    public Game(Level level, Player player, List<Enemy> enemies) {
+        initialize(level, player, enemies);
+    }
+
+    /**
+     * Creates the enemies of the default level.
+     *
+     * @return the default enemy list
      */
-    private void initialize() {
-        Level level = new Level(13, 11);
-        Player player = new Player(1, 1);
+    private static List<Enemy> defaultEnemies() {
         List<Enemy> enemies = new ArrayList<>();
-        List<Bomb> bombs = new ArrayList<>();
 
         // Add Entities polymorphically
         enemies.add(new Shadowling(5, 5));
         enemies.add(new Shadowling(6, 8));
         enemies.add(new Charger(10, 7));
         enemies.add(new Wraith(8, 3)); 
+        return enemies;
+    }
+
+    /**
+     * Sets up the map, player, enemies, and empty bomb lists.
+     *
+     * @param level   the level to play on
+     * @param player  the player at its spawn point
+     * @param enemies the enemies at their spawn points
+     */
+    private void initialize(Level level, Player player, List<Enemy> enemies) {
+        List<Bomb> bombs = new ArrayList<>();
 
         state = new GameState(level, player, enemies, bombs, 0);
         gameOver = false;
@@ -45,11 +115,21 @@ public class Game {
 
     /**
      * Processes raw input strings from the UI Controller.
-     * Handles movement (WASD) and actions (Bomb, Save, Load).
+     * Handles movement (WASD) and actions (Bomb, Save, Load). Z saves to
+     * and X loads from {@link SaveFile#DEFAULT_FILE}; loading also works once
+     * the game is over.
      *
      * @param input the string representation of the key pressed (e.g., "W", "B")
      */
     public void processPlayerInput(String input) {
+        if (input.equals("X")) {
+            try {
+                load(SaveFile.DEFAULT_FILE);
+            } catch (IOException e) {
+                System.err.println("Could not load the game: " + e.getMessage());
+            }
+            return;
+        }
         if (gameOver) return;
 
         Player player = state.getPlayer();
@@ -62,8 +142,13 @@ public class Game {
             case "A": dx = -1; break;
             case "D": dx = 1; break;
             case "B": placeBomb(); break;
-            case "Z": System.out.println("Saving..."); break; // Placeholder for persistence
-            case "X": System.out.println("Loading..."); break; // Placeholder for persistence
+            case "Z":
+                try {
+                    save(SaveFile.DEFAULT_FILE);
+                } catch (IOException e) {
+                    System.err.println("Could not save the game: " + e.getMessage());
+                }
+                break;
         }
 
         if (dx != 0 || dy != 0) {
@@ -72,12 +157,53 @@ public class Game {
         checkGameState();
     }
 
+    /**
+     * Saves the game state.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        SaveFile.write(file, state);
+    }
+
+    /**
+     * Replaces the game state with a saved one. The per-level caches are
+     * dropped, and the game is over at once if the save was.
+     *
+     * @param file the file to read
+     * @throws IOException if the file cannot be read or is not a valid save file
+     */
+    public void load(Path file) throws IOException {
+        state = SaveFile.read(file);
+        chaseField = null;
+        pathfinder = null;
+        gameOver = false;
+        victory = false;
+        checkGameState();
+    }
+
+    /**
+     * Advances the game by one tick with no UI involved: applies the keys
+     * pressed since the last tick, in order, then runs
+     * {@link #updateGameLogic()}.
+     *
+     * @param inputs the keys pressed, e.g. "W", "B"; may be none
+     */
+    public void step(String... inputs) {
+        for (String input : inputs) {
+            processPlayerInput(input);
+        }
+        updateGameLogic();
+    }
+
     /**
      * Advances the game logic by one "tick".
      * 
      * This method is called by the UI Timer. It:
      * 
-     * Decrements bomb timers and handles explosions.
+     * Decrements bomb timers and handles explosions, including chain
+     * reactions where a blast sets off other bombs.
      * Applies damage to players and enemies.
      * Moves all active enemies.
      * Increments the turn counter.
@@ -89,35 +215,73 @@ public class Game {
         Player player = state.getPlayer();
         Level level = state.getLevel();
         List<Enemy> enemies = state.getEnemies();
-        List<Bomb> bombs = state.getBombs();
-        List<Explosion> explosions = new ArrayList<>();
-
-        // Update Bombs
-        Iterator<Bomb> it = bombs.iterator();
-        while (it.hasNext()) {
-            Bomb b = it.next();
-            b.tick(); // Reduces timer
-            if (b.getTimer() <= 0) {
-                explosions.addAll(b.explode(level));
-                player.recoverBomb(); 
-                it.remove();
+        OccupancyIndex occupancy = state.getOccupancy();
+        int turn = state.getTurnCounter();
+        blast.clear();
+
+        // Put out blasts that have burned long enough
+        burntOut.clear();
+        state.getBurnouts().advance(turn, burntOut);
+        for (BlastBuffer done : burntOut) {
+            state.getBurning().remove(done);
+            spareBlasts.add(done);
+        }
+
+        // Update Bombs: only the fuses running out this turn are visited
+        dueBombs.clear();
+        state.getFuses().advance(turn, dueBombs);
+        for (Bomb b : dueBombs) {
+            if (!b.isDetonated()) { // may already have gone off in a chain
+                b.trigger();
+                cascade.add(b);
             }
         }
+        if (!cascade.isEmpty()) {
+            detonateCascade(level, player, occupancy);
+            state.removeExplodedBombs();
+            keepBurning(turn);
+        }
 
-        // Process Explosion Damage
-        for (Explosion e : explosions) {
-            if (player.getX() == e.getX() && player.getY() == e.getY()) {
-                player.loseLife();
+        // Process Explosion Damage: only entities on blasted cells are visited
+        boolean killed = false;
+        for (int i = 0; i < blast.size(); i++) {
+            for (int id = occupancy.first(blast.x(i), blast.y(i)); id != OccupancyIndex.NONE; id = occupancy.next(id)) {
+                Entity hit = occupancy.get(id);
+                if (hit == player) {
+                    player.loseLife();
+                    lastHitBy = Bomb.class;
+                } else if (hit instanceof Enemy) {
+                    ((Enemy) hit).setDead(true);
+                    killed = true;
+                }
             }
-            // Remove enemies hit by explosion (Functional style removal)
-            enemies.removeIf(en -> en.getX() == e.getX() && en.getY() == e.getY());
+        }
+        if (killed) {
+            state.removeDeadEnemies();
         }
 
-        // Update Enemies
+        // Update Enemies: chasers share one search from the player per tick,
+        // or on levels too large for that each keep a path of their own
+        boolean fieldReady = false, fits = FlowField.fits(level);
         for (Enemy enemy : enemies) {
-            enemy.update(level, player);
-            if (enemy.getX() == player.getX() && enemy.getY() == player.getY()) {
+            if (enemy.chasesPlayer() && !fits) {
+                enemy.update(level, player, getPathfinder());
+                continue;
+            }
+            if (enemy.chasesPlayer() && !fieldReady) {
+                if (chaseField == null) chaseField = new FlowField(level);
+                chaseField.update(player.getX(), player.getY());
+                fieldReady = true;
+            }
+            enemy.update(level, player, fieldReady ? chaseField : null);
+        }
+
+        // Every enemy that ended its move on the player hurts it
+        for (int id = occupancy.first(player.getX(), player.getY()); id != OccupancyIndex.NONE; id = occupancy.next(id)) {
+            Entity hit = occupancy.get(id);
+            if (hit instanceof Enemy) {
                 player.loseLife();
+                lastHitBy = hit.getClass();
             }
         }
 
@@ -125,16 +289,59 @@ public class Game {
         checkGameState();
     }
 
+    /**
+     * Explodes every bomb in {@link #cascade}, plus any bomb caught in one of
+     * their blasts, in the same tick. Each bomb is queued once and each blasted
+     * cell is checked once through the bomb-by-cell index, so the cost is linear
+     * in bombs plus blast cells however long the chain gets.
+     *
+     * @param level     the level being blasted
+     * @param player    the player, who gets each exploded bomb back
+     * @param occupancy the index used to find bombs on blasted cells
+     */
+    private void detonateCascade(Level level, Player player, OccupancyIndex occupancy) {
+        while (!cascade.isEmpty()) {
+            Bomb b = cascade.poll();
+            int from = blast.size();
+            b.explode(level, blast);
+            player.recoverBomb();
+            for (int i = from; i < blast.size(); i++) {
+                Bomb hit = occupancy.bombAt(blast.x(i), blast.y(i));
+                if (hit != null && !hit.isDetonated()) {
+                    hit.trigger();
+                    cascade.add(hit);
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps this tick's blast on screen for {@link Explosion#DEFAULT_DURATION}
+     * turns by copying it into a recycled buffer scheduled to burn out.
+     *
+     * @param turn the current turn
+     */
+    private void keepBurning(int turn) {
+        BlastBuffer copy = spareBlasts.isEmpty() ? new BlastBuffer(blast.size()) : spareBlasts.poll();
+        copy.clear();
+        for (int i = 0; i < blast.size(); i++) {
+            copy.add(blast.x(i), blast.y(i));
+        }
+        state.getBurning().add(copy);
+        state.getBurnouts().schedule(copy, turn + Explosion.DEFAULT_DURATION);
+    }
+
     /**
      * Attempts to place a bomb at the player's current location.
-     * Validates if the player has ammo before placing.
+     * Validates if the player has ammo and the tile holds no bomb yet.
      */
     private void placeBomb() {
         Player player = state.getPlayer();
-        List<Bomb> bombs = state.getBombs();
-        if (player.canPlaceBomb()) {
-            bombs.add(new Bomb(player.getX(), player.getY())); 
+        boolean occupied = state.getOccupancy().bombAt(player.getX(), player.getY()) != null;
+        if (player.canPlaceBomb() && !occupied) {
+            state.addBomb(new Bomb(player.getX(), player.getY())); 
             player.placeBomb(); 
+            bombsPlaced++;
         }
     }
 
@@ -152,13 +359,25 @@ public class Game {
             victory = false;
         }
 
-        Tile t = level.getTile(player.getX(), player.getY());
-        if (t.getType() == Tile.Type.EXIT) {
+        if (level.getType(player.getX(), player.getY()) == Tile.Type.EXIT) {
             gameOver = true;
             victory = true;
         }
     }
 
+    /**
+     * Gets the pathfinder for chasers on levels too large for a
+     * {@link FlowField}, and for anything heading somewhere other than the
+     * player, creating it on first use. It keeps itself up to date as tiles
+     * change.
+     *
+     * @return the pathfinder for the current level
+     */
+    public HierarchicalPathfinder getPathfinder() {
+        if (pathfinder == null) pathfinder = new HierarchicalPathfinder(state.getLevel());
+        return pathfinder;
+    }
+
     public GameState getState() { 
         return state; 
     }
@@ -171,4 +390,17 @@ public class Game {
         return victory; 
     }
 
+    /**
+     * @return what last cost the player a life: {@code Bomb.class} for a
+     *         blast, the enemy's class for a hit, or {@code null} if nothing has
+     */
+    public Class<? extends Entity> getLastHitBy() {
+        return lastHitBy;
+    }
+
+    /** @return the number of bombs the player has placed this game */
+    public int getBombsPlaced() {
+        return bombsPlaced;
+    }
+
 }
\ No newline at end of file
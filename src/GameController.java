@@ -1,5 +1,5 @@
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.Node;
@@ -7,13 +7,13 @@ import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Button;
-import javafx.scene.image.Image;
+import javafx.scene.control.CheckBox;
 import javafx.scene.input.KeyCode;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
-import javafx.util.Duration;
 
 /**
  * GameController.java
@@ -23,8 +23,26 @@ import javafx.util.Duration;
  * 
  * Transitioning from Menu to Game.
  * Capturing Keyboard Input (WASD/Arrows).
- * Running the Game Loop (Timer).
- * Rendering the Game State to the Canvas.
+ * Running the Game Loop on a {@link SimulationLoop} thread.
+ * Rendering the latest {@link GameSnapshot} to the Canvas.
+ *
+ * The game itself is only touched by the simulation thread. Key presses are
+ * queued to it, and an {@link AnimationTimer} on the FX thread draws each new
+ * snapshot once, so a slow frame never holds up a game tick.
+ *
+ * The tiles and sprites are drawn by one of two views, chosen with the
+ * "Pixel buffer" box in the menu: a {@link CanvasView}, which paints with
+ * canvas calls, or a {@link PixelBufferView}, which rasterizes straight into
+ * the image on screen. The box starts ticked if the JVM was started with
+ * {@code -D}{@value #PIXEL_BUFFER_PROPERTY}{@code =true}. Either way, a canvas
+ * on top carries the HUD: the lives, the turn and the bombs' fuse timers.
+ *
+ * Levels larger than the window are shown through a {@link Camera} that
+ * follows the player. Only what is in view is drawn, so a frame costs the
+ * same however big the level is.
+ *
+ * Sprites come from a {@link SpriteAtlas} loaded on a background thread when
+ * the menu opens; the Play button stays disabled until it is ready.
  * 
  */
 public class GameController {
@@ -32,35 +50,70 @@ public class GameController {
     @FXML
     private Button PlayGameButton;
 
-    /** The core game logic instance. */
-    private Game game;
+    @FXML
+    private CheckBox PixelBufferBox;
+
+    /** Runs the core game logic on its own thread. */
+    private SimulationLoop loop;
+
+    /** Game ticks per second. */
+    private static final double TICKS_PER_SECOND = 1.0;
+
+    /** Turns between autosaves to {@link Autosaver#DEFAULT_FILE}. */
+    private static final int AUTOSAVE_TURNS = 30;
+
+    /** Turns between checksums in the replay, see {@link ReplayRecorder}. */
+    private static final int REPLAY_CHECKPOINT_TURNS = 10;
+
+    /** Sequence number of the snapshot on screen, or -1 before the first frame. */
+    private long drawnSequence = -1;
 
-    /** The canvas used to draw the game graphics. */
+    /** The canvas over the view for the HUD, redrawn every frame. */
     private Canvas canvas;
 
+    /** The part of the level in the window. */
+    private Camera camera;
+
+    /** System property that ticks the "Pixel buffer" box when the menu opens. */
+    public static final String PIXEL_BUFFER_PROPERTY = "shadow.pixelBuffer";
+
+    /** The canvas renderer, unless the pixel buffer was chosen. */
+    private CanvasView canvasView;
+
+    /** The pixel-buffer renderer, if it was chosen. */
+    private PixelBufferView pixelView;
+
+    /** Most tiles shown across and down; smaller levels are shown whole. */
+    private static final int VIEW_COLUMNS = 13;
+    private static final int VIEW_ROWS = 11;
+
     /** The size of one grid tile in pixels (40x40). */
     private static final int TILE_SIZE = 40;
 
-    private Image playerImage;
-    private Image shadowlingImage;
-    private Image chargerImage;
-    private Image wraithImage;
-    private Image bombImage;
-    
+    /** Sprite names packed into the atlas; ones without a PNG are drawn as shapes. */
+    private static final String[] SPRITES = { "player", "bomb", "shadowling", "charger", "wraith" };
+
+    /** All sprites, packed, or {@code null} if they could not be loaded. */
+    private SpriteAtlas atlas;
+
     /**
-     * Loads all game sprites/images
+     * Called by the FXML loader once the menu is built. Starts loading the
+     * sprite atlas in the background and enables the Play button when it is
+     * ready, so the first game frame never waits on disk.
      */
-    private void loadImages() {
-        try {
-            //playerImage = new Image(getClass().getResourceAsStream("/player.png"));
-            shadowlingImage = new Image(getClass().getResourceAsStream("/resources_output/shadowling.png"));
-            chargerImage = new Image(getClass().getResourceAsStream("/resources_output/charger.png"));
-            wraithImage = new Image(getClass().getResourceAsStream("/resources_output/wraith.png"));
-            //bombImage = new Image(getClass().getResourceAsStream("/bomb.png"));
-        } catch (Exception e) {
-            System.err.println("Error loading images: " + e.getMessage());
-            // Fallback to colored rectangles if images fail to load
-        }
+    @FXML
+    void initialize() {
+        PixelBufferBox.setSelected(Boolean.getBoolean(PIXEL_BUFFER_PROPERTY));
+        PlayGameButton.setDisable(true);
+        SpriteAtlas.loadAsync(TILE_SIZE, SPRITES).whenComplete((loaded, error) -> Platform.runLater(() -> {
+            if (loaded != null) {
+                atlas = loaded;
+            } else {
+                System.err.println("Error loading images: " + error.getMessage());
+                // Fallback to colored rectangles if images fail to load
+            }
+            PlayGameButton.setDisable(false);
+        }));
     }
 
     /**
@@ -73,162 +126,122 @@ public class GameController {
     @FXML
     void PGButtonPressed(ActionEvent event) {
         // Initialize the Game Logic
-        game = new Game();
+        // The run is recorded so it can be replayed with ReplayPlayer
+        Game game = new Game();
+        loop = new SimulationLoop(game, SimulationLoop.tickNanos(TICKS_PER_SECOND));
+        loop.setAutosaver(new Autosaver(Autosaver.DEFAULT_FILE, AUTOSAVE_TURNS));
+        loop.setRecorder(new ReplayRecorder(game.getState().getSeed(), REPLAY_CHECKPOINT_TURNS), ReplayRecorder.DEFAULT_FILE);
 
         // Setup the Game View (Canvas)
-        // Level size is 13x11 based on Level.java dimensions
-        int width = 13 * TILE_SIZE; 
-        int height = 11 * TILE_SIZE;
+        // The window shows the whole level, or a camera view of it if it is larger
+        GameSnapshot first = loop.latest();
+        camera = new Camera(VIEW_COLUMNS, VIEW_ROWS, first.getWidth(), first.getHeight());
+        int width = camera.getColumns() * TILE_SIZE;
+        int height = camera.getRows() * TILE_SIZE;
         
         BorderPane root = new BorderPane();
         canvas = new Canvas(width, height);
-        root.setCenter(canvas);
+        if (PixelBufferBox.isSelected()) {
+            pixelView = new PixelBufferView(camera.getColumns(), camera.getRows(), TILE_SIZE, atlas);
+            root.setCenter(new StackPane(pixelView.getNode(), canvas));
+        } else {
+            canvasView = new CanvasView(camera.getColumns(), camera.getRows(), TILE_SIZE, atlas);
+            root.setCenter(new StackPane(canvasView.getNode(), canvas));
+        }
         
         Scene gameScene = new Scene(root);
 
-        // Setup Input Handling (Keyboard)
+        // Setup Input Handling (Keyboard): keys are queued to the simulation thread,
+        // which publishes a new snapshot straight after applying them
         gameScene.setOnKeyPressed(e -> {
             KeyCode code = e.getCode();
             switch (code) {
-                case W: game.processPlayerInput("W"); break;
-                case S: game.processPlayerInput("S"); break;
-                case A: game.processPlayerInput("A"); break;
-                case D: game.processPlayerInput("D"); break;
-                case B: game.processPlayerInput("B"); break; // Place Bomb
-                case Z: game.processPlayerInput("Z"); break; // Save
-                case X: game.processPlayerInput("X"); break; // Load
+                case W: loop.submit("W"); break;
+                case S: loop.submit("S"); break;
+                case A: loop.submit("A"); break;
+                case D: loop.submit("D"); break;
+                case B: loop.submit("B"); break; // Place Bomb
+                case Z: loop.submit("Z"); break; // Save
+                case X: loop.submit("X"); break; // Load
                 default: break;
             }
-            render(); // Redraw immediately after input for responsiveness
         });
 
-        // Setup Game Loop (Timer)
-        // Runs logic every 1.0 seconds. Adjust Duration.seconds(X) to change game speed.
-        Timeline gameLoop = new Timeline(new KeyFrame(Duration.seconds(1), e -> {
-            if (!game.isGameOver()) {
-                game.updateGameLogic();
-                render();
+        // Setup Game Loop: fixed-rate ticks on the simulation thread, and a
+        // redraw on the FX thread whenever a new snapshot has been published.
+        // Adjust TICKS_PER_SECOND to change game speed.
+        AnimationTimer frames = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                GameSnapshot snap = loop.latest();
+                if (snap.getSequence() != drawnSequence) {
+                    drawnSequence = snap.getSequence();
+                    render(snap);
+                }
             }
-        }));
-        gameLoop.setCycleCount(Timeline.INDEFINITE);
-        gameLoop.play();
+        };
+        frames.start();
+        loop.start();
 
         // Switch the Window (Stage) to the Game Scene
         Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
         stage.setScene(gameScene);
         stage.centerOnScreen();
-        
-        // Initial Draw
-        render();
+        stage.setOnHidden(e -> {
+            frames.stop();
+            loop.stop();
+        });
     }
 
     /**
-     * Draws the current state of the Game object to the JavaFX Canvas.
-     * This method clears the screen and redraws the grid, entities, and HUD
-     * based on the latest data from {@code GameState}.
+     * Draws a snapshot of the game. The camera follows the player; the view
+     * draws what is in sight, then the HUD is redrawn on the canvas on top.
+     *
+     * @param snap the snapshot to draw
      */
-    private void render() {
-        GraphicsContext gc = canvas.getGraphicsContext2D();
-        GameState state = game.getState();
-        Level level = state.getLevel();
-        Player p = state.getPlayer();
-
-        // Clear background
-        gc.setFill(Color.BLACK);
-        gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
-
-        // Draw Tiles
-        for (int x = 0; x < 13; x++) {
-            for (int y = 0; y < 11; y++) {
-                Tile tile = level.getTile(x, y);
-                drawTile(gc, x, y, tile);
-            }
-        }
-
-        // Draw Bombs
-        for (Bomb b : state.getBombs()) {
-            gc.setFill(Color.BLACK);
-            gc.fillOval(b.getX() * TILE_SIZE + 5, b.getY() * TILE_SIZE + 5, TILE_SIZE - 10, TILE_SIZE - 10);
-            // Draw Fuse Timer text on top of bomb
-            gc.setFill(Color.WHITE);
-            gc.fillText(String.valueOf(b.getTimer()), b.getX() * TILE_SIZE + 15, b.getY() * TILE_SIZE + 25);
-        }
-
-        // Draw Enemies (Color coded by type)
-        for (Enemy e : state.getEnemies()) {
-            Image enemyImage = null;
-            
-            if (e instanceof Charger && chargerImage != null) {
-                enemyImage = chargerImage;
-            } else if (e instanceof Wraith && wraithImage != null) {
-                enemyImage = wraithImage;
-            } else if (e instanceof Shadowling && shadowlingImage != null) {
-                enemyImage = shadowlingImage;
-            }
-            
-            if (enemyImage != null) {
-                gc.drawImage(enemyImage, e.getX() * TILE_SIZE, e.getY() * TILE_SIZE, TILE_SIZE, TILE_SIZE);
-            } else {
-                // Fallback to colored rectangles
-                if (e instanceof Charger) gc.setFill(Color.ORANGERED);
-                else if (e instanceof Wraith) gc.setFill(Color.PURPLE);
-                else gc.setFill(Color.RED);
-                
-                gc.fillRect(e.getX() * TILE_SIZE + 5, e.getY() * TILE_SIZE + 5, TILE_SIZE - 10, TILE_SIZE - 10);
-            }
+    private void render(GameSnapshot snap) {
+        StateSnapshot state = snap.getState();
+        camera.follow(snap.getPlayerX(), snap.getPlayerY());
+        if (pixelView != null) {
+            pixelView.render(state, camera);
+        } else {
+            canvasView.render(state, camera);
         }
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        drawHud(gc, snap);
+    }
 
-        // Draw Player
-        gc.setFill(Color.CYAN);
-        gc.fillRect(p.getX() * TILE_SIZE + 5, p.getY() * TILE_SIZE + 5, TILE_SIZE - 10, TILE_SIZE - 10);
-
-        // Draw HUD / Game Over Screen overlay
-        if (game.isGameOver()) {
+    /**
+     * Draws the HUD, with the bombs' fuse timers, or the game over overlay
+     * once the game has ended.
+     *
+     * @param gc   the GraphicsContext of the top canvas
+     * @param snap the snapshot being drawn
+     */
+    private void drawHud(GraphicsContext gc, GameSnapshot snap) {
+        if (snap.isGameOver()) {
             gc.setFill(new Color(0, 0, 0, 0.7)); // Semi-transparent black overlay
             gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
             gc.setFill(Color.WHITE);
             gc.setFont(new Font(30));
-            String msg = game.isVictory() ? "VICTORY!" : "GAME OVER";
+            String msg = snap.isVictory() ? "VICTORY!" : "GAME OVER";
             gc.fillText(msg, canvas.getWidth() / 2 - 80, canvas.getHeight() / 2);
         } else {
             // Live HUD
             gc.setFill(Color.WHITE);
             gc.setFont(new Font(14));
-            gc.fillText("Lives: " + p.getLives(), 10, 20);
-            gc.fillText("Turn: " + state.getTurnCounter(), 80, 20);
-        }
-    }
 
-    /**
-     * Helper method to draw a specific tile type at grid coordinates.
-     *
-     * @param gc   the GraphicsContext used for drawing
-     * @param x    the grid X coordinate
-     * @param y    the grid Y coordinate
-     * @param tile the Tile object containing type information
-     */
-    private void drawTile(GraphicsContext gc, int x, int y, Tile tile) {
-        if (tile == null) return;
-        switch (tile.getType()) {
-            case HARD_WALL:
-                gc.setFill(Color.DARKGRAY);
-                gc.fillRect(x * TILE_SIZE, y * TILE_SIZE, TILE_SIZE, TILE_SIZE);
-                break;
-            case SOFT_WALL:
-                gc.setFill(Color.SADDLEBROWN);
-                gc.fillRect(x * TILE_SIZE, y * TILE_SIZE, TILE_SIZE, TILE_SIZE);
-                // Add a border to soft walls for detail
-                gc.setStroke(Color.BLACK);
-                gc.strokeRect(x * TILE_SIZE, y * TILE_SIZE, TILE_SIZE, TILE_SIZE);
-                break;
-            case FLOOR:
-                gc.setFill(Color.LIGHTGRAY);
-                gc.fillRect(x * TILE_SIZE, y * TILE_SIZE, TILE_SIZE, TILE_SIZE);
-                break;
-            case EXIT:
-                gc.setFill(Color.GOLD);
-                gc.fillRect(x * TILE_SIZE, y * TILE_SIZE, TILE_SIZE, TILE_SIZE);
-                break;
+            // Fuse Timer text on top of each bomb in view
+            StateSnapshot state = snap.getState();
+            int cx = camera.getX(), cy = camera.getY();
+            state.getBombGrid().forEachIn(cx, cy, cx + camera.getColumns(), cy + camera.getRows(), b -> {
+                int turnsLeft = b.getDueTurn() - state.getTurn() + 1;
+                gc.fillText(String.valueOf(turnsLeft), (b.getX() - cx) * TILE_SIZE + 15, (b.getY() - cy) * TILE_SIZE + 25);
+            });
+
+            gc.fillText("Lives: " + snap.getLives(), 10, 20);
+            gc.fillText("Turn: " + snap.getTurn(), 80, 20);
         }
     }
 }
\ No newline at end of file
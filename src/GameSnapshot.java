@@ -0,0 +1,139 @@
+/**
+ * GameSnapshot.java
+ *
+ * An immutable view of everything the screen shows about a {@link Game} at the
+ * end of one tick: the tiles, the player, enemies, bombs and burning blasts,
+ * and the HUD values.
+ *
+ * {@link SimulationLoop} builds a snapshot on the simulation thread after each
+ * tick or input and hands it to the JavaFX thread, which draws from it without
+ * touching the live game. Since nothing in a snapshot changes after it is
+ * built, the two threads share it without locks. The game state inside is a
+ * {@link StateSnapshot}, so unchanged tiles and entities are shared between
+ * successive snapshots rather than copied.
+ *
+ */
+public final class GameSnapshot {
+
+    /** Number of snapshots taken before this one, so renderers can skip repeats. */
+    private final long sequence;
+
+    /** The frozen game state, sharing unchanged parts with earlier snapshots. */
+    private final StateSnapshot state;
+
+    private final boolean gameOver;
+    private final boolean victory;
+
+    /**
+     * Freezes the visible state of a game. Must be called on the thread that
+     * updates the game.
+     *
+     * @param game     the game to freeze
+     * @param sequence the number of this snapshot
+     */
+    public GameSnapshot(Game game, long sequence) {
+        this.sequence = sequence;
+        this.state = game.getState().snapshot();
+        this.gameOver = game.isGameOver();
+        this.victory = game.isVictory();
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /** @return the frozen game state */
+    public StateSnapshot getState() {
+        return state;
+    }
+
+    public int getWidth() {
+        return state.getTiles().getWidth();
+    }
+
+    public int getHeight() {
+        return state.getTiles().getHeight();
+    }
+
+    /**
+     * @param x the X-coordinate of the tile
+     * @param y the Y-coordinate of the tile
+     * @return the type of the tile when the snapshot was taken
+     */
+    public Tile.Type getType(int x, int y) {
+        return state.getTiles().getType(x, y);
+    }
+
+    public int getTurn() {
+        return state.getTurn();
+    }
+
+    public int getLives() {
+        return state.getLives();
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public boolean isVictory() {
+        return victory;
+    }
+
+    public int getPlayerX() {
+        return state.getPlayer().getX();
+    }
+
+    public int getPlayerY() {
+        return state.getPlayer().getY();
+    }
+
+    /** @return the number of enemies alive */
+    public int getEnemyCount() {
+        return state.getEnemies().size();
+    }
+
+    public int getEnemyX(int i) {
+        return state.getEnemies().get(i).getX();
+    }
+
+    public int getEnemyY(int i) {
+        return state.getEnemies().get(i).getY();
+    }
+
+    /** @return the map logo of enemy i: {@code 'H'}, {@code 'C'} or {@code 'W'} */
+    public char getEnemyLogo(int i) {
+        return state.getEnemies().get(i).getLogo();
+    }
+
+    /** @return the number of bombs on the map */
+    public int getBombCount() {
+        return state.getBombs().size();
+    }
+
+    public int getBombX(int i) {
+        return state.getBombs().get(i).getX();
+    }
+
+    public int getBombY(int i) {
+        return state.getBombs().get(i).getY();
+    }
+
+    /** @return the ticks left on bomb i's fuse, as {@link Bomb#getTurnsLeft(int)} */
+    public int getBombTurnsLeft(int i) {
+        return state.getBombs().get(i).getDueTurn() - state.getTurn() + 1;
+    }
+
+    /** @return the number of cells of blasts still burning */
+    public int getBlastCount() {
+        return state.getBlastCount();
+    }
+
+    public int getBlastX(int i) {
+        return state.getBlastX(i);
+    }
+
+    public int getBlastY(int i) {
+        return state.getBlastY(i);
+    }
+}
@@ -1,5 +1,8 @@
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.List;
 
 /**
@@ -8,7 +11,21 @@ import java.util.List;
  * Represents the serializable snapshot of the current game session.
  * Stores all necessary information to resume gameplay at a later time.
  * 
- * This class contains no game logic—it only holds data for persistence.
+ * This class contains no game logic—it only holds data for persistence,
+ * plus indexes that are rebuilt rather than saved: an {@link OccupancyIndex}
+ * over the player, enemies and bombs, {@link TimerWheel}s for bomb fuses
+ * and burning blasts, and a {@link DangerMap} of where pending blasts will
+ * hit. Add and remove bombs and enemies through this class so the indexes
+ * stay in step with the lists.
+ *
+ * The state also owns the game seed, from which every enemy's random stream
+ * is derived (see {@link Rng}), so a saved game resumes with the same
+ * random behaviour it would have had.
+ *
+ * {@link #snapshot()} freezes the state into an immutable
+ * {@link StateSnapshot} for readers on other threads, sharing everything
+ * that has not changed since the previous snapshot; saves are written from
+ * such snapshots.
  * 
  */
 public class GameState implements Serializable {
@@ -20,8 +37,36 @@ public class GameState implements Serializable {
     private List<Bomb> bombs;
     private int turnCounter;
 
+    /** Seed every random stream of the game is derived from. */
+    private long seed;
+
+    /** Number of random streams handed out so far. */
+    private long streams;
+
+    /** Which entities stand on which cell. */
+    private transient OccupancyIndex occupancy;
+
+    /** Armed bombs by the turn they explode. */
+    private transient TimerWheel<Bomb> fuses;
+
+    /** Burning blasts by the turn they burn out. */
+    private transient TimerWheel<BlastBuffer> burnouts;
+
+    /** Cells of the blasts still burning, oldest first. */
+    private transient ArrayDeque<BlastBuffer> burning;
+
+    /** Where and when pending bombs will blast. */
+    private transient DangerMap danger;
+
+    /** Copies changed tile chunks for {@link #snapshot()}; created on first use. */
+    private transient TileSnapshot.Tracker tileTracker;
+
+    /** The last snapshot taken; the occupancy change log runs from it. */
+    private transient StateSnapshot lastSnapshot;
+
     /**
-     * Constructs a new {@code GameState} object.
+     * Constructs a new {@code GameState} object whose random streams are
+     * derived from the level's seed.
      *
      * @param level  the current game level
      * @param player the player character
@@ -30,11 +75,71 @@ public class GameState implements Serializable {
      * @param turnCounter current turn count
      */
     public GameState(Level level, Player player, List<Enemy> enemies, List<Bomb> bombs, int turnCounter) {
+        this(level, player, enemies, bombs, turnCounter, level.getSeed());
+    }
+
+    /**
+     * Constructs a new {@code GameState} object. Each enemy gets its own
+     * random stream of the seed, in list order, so the same seed and inputs
+     * always play out the same way.
+     *
+     * @param level  the current game level
+     * @param player the player character
+     * @param enemies list of active enemies
+     * @param bombs list of active bombs
+     * @param turnCounter current turn count
+     * @param seed   the seed of the game's random streams
+     */
+    public GameState(Level level, Player player, List<Enemy> enemies, List<Bomb> bombs, int turnCounter, long seed) {
         this.level = level;
         this.player = player;
         this.enemies = enemies;
         this.bombs = bombs;
         this.turnCounter = turnCounter;
+        this.seed = seed;
+        for (Enemy e : enemies) e.seedRandom(newStream());
+        buildIndexes();
+    }
+
+    /**
+     * Indexes the player, enemies and bombs by cell and schedules the
+     * bomb fuses.
+     */
+    private void buildIndexes() {
+        occupancy = new OccupancyIndex(level.getWidth());
+        fuses = new TimerWheel<>(turnCounter - 1);
+        burnouts = new TimerWheel<>(turnCounter - 1);
+        burning = new ArrayDeque<>();
+        danger = new DangerMap(level, occupancy);
+        occupancy.add(player);
+        for (Enemy e : enemies) occupancy.add(e);
+        for (Bomb b : bombs) {
+            occupancy.add(b);
+            scheduleFuse(b);
+            danger.bombPlaced(b);
+        }
+    }
+
+    /**
+     * Arms a bomb if needed and schedules its explosion.
+     *
+     * @param b the bomb to schedule
+     */
+    private void scheduleFuse(Bomb b) {
+        if (!b.isArmed()) b.arm(turnCounter);
+        fuses.schedule(b, b.getDueTurn());
+    }
+
+    /**
+     * Rebuilds the indexes after deserialization.
+     *
+     * @param in the stream being read
+     * @throws IOException            if the stream cannot be read
+     * @throws ClassNotFoundException if a serialized class is missing
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        buildIndexes();
     }
 
     // ---------------- Getters ----------------
@@ -59,10 +164,175 @@ public class GameState implements Serializable {
         return turnCounter; 
     }
 
+    /** @return the seed of the game's random streams */
+    public long getSeed() {
+        return seed;
+    }
+
+    public OccupancyIndex getOccupancy() {
+        return occupancy;
+    }
+
+    public TimerWheel<Bomb> getFuses() {
+        return fuses;
+    }
+
+    public TimerWheel<BlastBuffer> getBurnouts() {
+        return burnouts;
+    }
+
+    /** @return the cells of blasts still burning, oldest first */
+    public ArrayDeque<BlastBuffer> getBurning() {
+        return burning;
+    }
+
+    /** @return where and when pending bombs will blast */
+    public DangerMap getDanger() {
+        return danger;
+    }
+
     // ---------------- Utility ----------------
 
+    /**
+     * Freezes the state as it is now into an immutable snapshot that other
+     * threads may read while the game goes on. Only what changed since the
+     * last snapshot is copied; everything else is shared with it. Must be
+     * called on the thread that updates the game.
+     *
+     * @return a consistent, immutable view of this state
+     */
+    public StateSnapshot snapshot() {
+        return snapshot(false);
+    }
+
+    /**
+     * Freezes the state like {@link #snapshot()}, also recording every
+     * enemy's random stream so the snapshot can be written with
+     * {@link SaveFile} and resume exactly. That costs one more {@code long}
+     * per enemy, plus the enemies and bombs in order, copied every time.
+     *
+     * @return a consistent, immutable view of this state that can be saved
+     */
+    public StateSnapshot snapshotForSave() {
+        return snapshot(true);
+    }
+
+    private StateSnapshot snapshot(boolean random) {
+        if (tileTracker == null) tileTracker = new TileSnapshot.Tracker(level);
+        lastSnapshot = new StateSnapshot(this, tileTracker.snapshot(), lastSnapshot, random);
+        occupancy.clearChanges();
+        return lastSnapshot;
+    }
+
+    /**
+     * Hands out the next random stream of the game seed. Streams are numbered
+     * in the order they are requested and the count is saved with the state,
+     * so entities created after a load get the same streams as in the
+     * original run.
+     *
+     * @return the initial state of a new stream, for {@link Rng}
+     */
+    public long newStream() {
+        return Rng.stream(seed, streams++);
+    }
+
+    /** @return the number of random streams handed out so far, for saving */
+    long getStreamCount() {
+        return streams;
+    }
+
+    /**
+     * Restores the number of random streams handed out, after a load has
+     * given each enemy back its saved stream.
+     *
+     * @param streams the saved stream count
+     */
+    void restoreStreamCount(long streams) {
+        this.streams = streams;
+    }
+
+    /**
+     * Hashes everything that decides how the game goes on: the turn, the
+     * player, every enemy with its random stream, every bomb and every tile.
+     * Replays compare checksums to find the first turn where a run went
+     * differently.
+     *
+     * The tiles enter through {@link Level#getChangeHash()}, which is kept up
+     * to date as they change, so a checksum costs the entities only, not the
+     * map. With the seed also hashed, that pins down every tile of a level
+     * generated from the seed, as every replayed level is; for a level read
+     * from a save file, it covers the tiles changed since the load.
+     *
+     * @return a 64-bit hash of the state
+     */
+    public long checksum() {
+        long h = Rng.mix(seed ^ turnCounter);
+        h = Rng.mix(h ^ pack(player.getX(), player.getY()));
+        h = Rng.mix(h ^ pack(player.getLives(), player.getAvailableBombs()));
+        for (Enemy e : enemies) {
+            h = Rng.mix(h ^ pack(e.getX(), e.getY()));
+            h = Rng.mix(h ^ e.getRandomState() ^ e.getLogo());
+        }
+        for (Bomb b : bombs) {
+            h = Rng.mix(h ^ pack(b.getX(), b.getY()));
+            h = Rng.mix(h ^ pack(b.getDueTurn(), b.getRange()));
+        }
+        return Rng.mix(h ^ level.getChangeHash());
+    }
+
+    private static long pack(int hi, int lo) {
+        return (long) hi << 32 | (lo & 0xFFFFFFFFL);
+    }
+
     /** Increments the turn counter by one. */
     public void incrementTurn() { 
         turnCounter++; 
     }
+
+    /**
+     * Adds a newly placed bomb and lights its fuse.
+     *
+     * @param b the bomb to add
+     */
+    public void addBomb(Bomb b) {
+        bombs.add(b);
+        occupancy.add(b);
+        scheduleFuse(b);
+        danger.bombPlaced(b);
+    }
+
+    /**
+     * Removes all bombs that have gone off from the bomb list and the index.
+     */
+    public void removeExplodedBombs() {
+        // Compact the list in one pass; removing through an iterator would
+        // shift the tail once per bomb
+        int kept = 0;
+        for (int i = 0; i < bombs.size(); i++) {
+            Bomb b = bombs.get(i);
+            if (b.isDetonated()) {
+                occupancy.remove(b);
+                danger.bombRemoved(b);
+            } else {
+                bombs.set(kept++, b);
+            }
+        }
+        bombs.subList(kept, bombs.size()).clear();
+    }
+
+    /**
+     * Removes all enemies marked dead from the enemy list and the index.
+     */
+    public void removeDeadEnemies() {
+        int kept = 0;
+        for (int i = 0; i < enemies.size(); i++) {
+            Enemy e = enemies.get(i);
+            if (e.isDead()) {
+                occupancy.remove(e);
+            } else {
+                enemies.set(kept++, e);
+            }
+        }
+        enemies.subList(kept, enemies.size()).clear();
+    }
 }
@@ -1,14 +1,22 @@
 
 import java.io.Serializable;
-import java.util.Random;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 
 /**
  * Level.java
  *
- * Represents the game world of Shadow Escape as a 2D grid of {@link Tile} objects.
+ * Represents the game world of Shadow Escape as a 2D grid of tiles.
  * Responsible for generating the map layout, checking tile walkability, and
  * handling destruction events such as bomb explosions.
  *
+ * Tiles are stored as one byte per cell (the {@link Tile.Type} ordinal) in a
+ * flat row-major array, so a lookup is a single array read and a 2048x2048
+ * map takes 4 MB. {@link #getTile(int, int)} hands out the shared
+ * {@link Tile} flyweight for the cell's type.
+ *
  * In MCO2, this class implements {@link Serializable}, allowing level states
  * to be saved and restored during gameplay. It serves as a concrete environment
  * container that interacts with movable entities like {@link Player}, {@link Enemy},
@@ -22,10 +30,28 @@ import java.util.Random;
  * 
  */
 public class Level implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
+
+    /** Cached {@link Tile.Type} values, indexed by the stored byte. */
+    private static final Tile.Type[] TYPES = Tile.Type.values();
+
+    static final byte FLOOR = (byte) Tile.Type.FLOOR.ordinal();
+    static final byte SOFT_WALL = (byte) Tile.Type.SOFT_WALL.ordinal();
+    static final byte HARD_WALL = (byte) Tile.Type.HARD_WALL.ordinal();
+    static final byte EXIT = (byte) Tile.Type.EXIT.ordinal();
+
+    /** Roughly one in eight open cells becomes a soft wall (must stay a power of two). */
+    static final int SOFT_WALL_ONE_IN = 8;
 
-    /** 2D array of {@link Tile} objects representing the level map. */
-    private Tile[][] map;
+    /** Number of rows generated together by one worker. */
+    private static final int BAND_ROWS = 64;
+
+    /** Neighbour offsets in the four cardinal directions. */
+    private static final int[] DX = { 1, -1, 0, 0 };
+    private static final int[] DY = { 0, 0, 1, -1 };
+
+    /** Tile types of the level, one {@link Tile.Type} ordinal per cell, row-major. */
+    private byte[] tiles;
 
     /** Width of the level in tiles. */
     private int width;
@@ -33,8 +59,29 @@ public class Level implements Serializable {
     /** Height of the level in tiles. */
     private int height;
 
-    /** Random number generator for map layout variation. */
-    private transient Random rnd;
+    /** Seed the layout was generated from. */
+    private long seed;
+
+    /** Observers told about every tile change; not saved with the level. */
+    private transient List<TileListener> listeners;
+
+    /** Hash of the tile changes made so far; see {@link #getChangeHash()}. */
+    private transient long changeHash;
+
+    /**
+     * Callback for objects that cache something derived from the tiles,
+     * such as pathfinding data or a rendered tile layer.
+     */
+    public interface TileListener {
+        /**
+         * Called after a tile has changed type.
+         *
+         * @param x    the X-coordinate of the tile
+         * @param y    the Y-coordinate of the tile
+         * @param type the tile's new type
+         */
+        void tileChanged(int x, int y, Tile.Type type);
+    }
 
     /**
      * Constructs a new {@code Level} with the specified dimensions.
@@ -45,60 +92,212 @@ public class Level implements Serializable {
      * @param height number of tiles vertically
      */
     public Level(int width, int height) {
+        this(width, height, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Constructs a new {@code Level} whose layout is generated from a seed.
+     * The same size and seed always produce the same map.
+     *
+     * @param width  number of tiles horizontally
+     * @param height number of tiles vertically
+     * @param seed   seed for the soft wall layout
+     */
+    public Level(int width, int height, long seed) {
         this.width = width;
         this.height = height;
-        this.rnd = new Random();
-        this.map = new Tile[width][height];
+        this.seed = seed;
+        this.tiles = new byte[width * height];
         generate();
     }
 
     /**
-     * Randomly generates the level layout.
-     * - Outer borders are {@code HARD_WALL}.
+     * Constructs a {@code Level} over already prepared tile data.
+     * Subclasses that keep their tiles elsewhere pass {@code null}
+     * and override {@link #read(int, int)} and {@link #write(int, int, byte)}.
+     *
+     * @param width  number of tiles horizontally
+     * @param height number of tiles vertically
+     * @param tiles  row-major tile type ordinals, or {@code null}
+     */
+    protected Level(int width, int height, byte[] tiles) {
+        this(width, height, tiles, 0);
+    }
+
+    /**
+     * Constructs a {@code Level} over already prepared tile data that was
+     * generated from a seed, such as a level read back from a save file.
+     *
+     * @param width  number of tiles horizontally
+     * @param height number of tiles vertically
+     * @param tiles  row-major tile type ordinals, or {@code null}
+     * @param seed   seed the layout was generated from
+     */
+    protected Level(int width, int height, byte[] tiles, long seed) {
+        this.width = width;
+        this.height = height;
+        this.tiles = tiles;
+        this.seed = seed;
+    }
+
+    /**
+     * Generates the level layout from {@link #seed}.
+     * - Outer borders are {@code HARD_WALL}, with a grid of {@code HARD_WALL} pillars inside.
      * - Inner spaces are mostly {@code FLOOR}, with random {@code SOFT_WALL}.
+     * - The top-left spawn corner is left clear.
      * - The bottom-right area contains one {@code EXIT} tile.
+     *
+     * Rows are filled in bands of {@link #BAND_ROWS}. Each band draws from its own
+     * {@link SplittableRandom} split off the seed in band order, so bands can be
+     * filled in parallel and the same seed always yields the same map.
      */
     private void generate() {
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
+        int bands = (height + BAND_ROWS - 1) / BAND_ROWS;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] rngs = new SplittableRandom[bands];
+        for (int b = 0; b < bands; b++) {
+            rngs[b] = root.split();
+        }
+
+        if (bands == 1) {
+            generateRows(0, height, rngs[0]);
+        } else {
+            IntStream.range(0, bands).parallel()
+                     .forEach(b -> generateRows(b * BAND_ROWS, Math.min(height, (b + 1) * BAND_ROWS), rngs[b]));
+        }
+
+        // Place exit near bottom-right corner
+        tiles[index(width - 2, height - 2)] = EXIT;
+    }
+
+    /**
+     * Fills one band of rows of the layout.
+     *
+     * @param y0  first row of the band
+     * @param y1  row after the last row of the band
+     * @param rnd random source for this band only
+     */
+    private void generateRows(int y0, int y1, SplittableRandom rnd) {
+        long bits = 0;
+        int left = 0;
+        for (int y = y0; y < y1; y++) {
+            boolean pillarRow = y % 2 == 0 && y < height - 2;
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                byte t;
                 if (x == 0 || y == 0 || x == width - 1 || y == height - 1) {
-                    map[x][y] = new Tile(Tile.Type.HARD_WALL);
+                    t = HARD_WALL;
+                } else if (pillarRow && x % 2 == 0 && x < width - 2) {
+                    t = HARD_WALL;
+                } else if (x <= 2 && y <= 2) {
+                    t = FLOOR; // keep the spawn corner open
                 } else {
-                    map[x][y] = new Tile(Tile.Type.FLOOR);
+                    // 3 random bits per cell, 21 cells per nextLong()
+                    if (left == 0) {
+                        bits = rnd.nextLong();
+                        left = 21;
+                    }
+                    t = (bits & (SOFT_WALL_ONE_IN - 1)) == 0 ? SOFT_WALL : FLOOR;
+                    bits >>>= 3;
+                    left--;
                 }
+                tiles[row + x] = t;
             }
         }
+    }
 
-        for (int j = 1; j < height - 2; j++) {
-            for(int k = 1; k < width - 2; k++){
-                if ((j % 2 == 0) && (k % 2 == 0)) {
-                    map[k][j] = new Tile(Tile.Type.HARD_WALL);
+    /**
+     * Checks that the exit can be reached from the player spawn at (1, 1),
+     * treating soft walls as passable since bombs can clear them.
+     * Generated levels always pass, because pillars only sit on cells where
+     * both coordinates are even; this is meant for authored or loaded levels.
+     *
+     * @return {@code true} if a path of non-hard-wall tiles joins the spawn and the exit
+     */
+    public boolean isSolvable() {
+        int[] queue = new int[width * height];
+        boolean[] seen = new boolean[width * height];
+        int head = 0, tail = 0;
+        if (read(1, 1) == HARD_WALL) return false;
+        queue[tail++] = index(1, 1);
+        seen[index(1, 1)] = true;
+        while (head < tail) {
+            int c = queue[head++];
+            int x = c % width, y = c / width;
+            if (read(x, y) == EXIT) return true;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + DX[d], ny = y + DY[d];
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+                int n = index(nx, ny);
+                if (!seen[n] && read(nx, ny) != HARD_WALL) {
+                    seen[n] = true;
+                    queue[tail++] = n;
                 }
             }
         }
+        return false;
+    }
 
-        /* 
-        // Randomly place soft walls in open spaces
-        for (int i = 0; i < width * height / 6; i++) {
-            int x = rnd.nextInt(width);
-            int y = rnd.nextInt(height);
-            if (map[x][y].getType() == Tile.Type.FLOOR)
-                map[x][y] = new Tile(Tile.Type.SOFT_WALL);
-        }
-        */
-
-        int i = 0;
-        while (i < 10) {
-            int x = rnd.nextInt(width);
-            int y = rnd.nextInt(height);
-            if (map[x][y].getType() == Tile.Type.FLOOR){
-            map[x][y] = new Tile(Tile.Type.SOFT_WALL);
-            i++;
-            }
-        }
+    /**
+     * Converts grid coordinates to a position in the row-major tile array.
+     *
+     * @param x the X-coordinate of the tile
+     * @param y the Y-coordinate of the tile
+     * @return the array index of the cell
+     */
+    private int index(int x, int y) {
+        return y * width + x;
+    }
 
-        // Place exit near bottom-right corner
-        map[width - 2][height - 2] = new Tile(Tile.Type.EXIT);
+    /**
+     * Reads the stored type ordinal of an in-bounds cell.
+     *
+     * @param x the X-coordinate of the tile
+     * @param y the Y-coordinate of the tile
+     * @return the {@link Tile.Type} ordinal of the cell
+     */
+    protected byte read(int x, int y) {
+        return tiles[index(x, y)];
+    }
+
+    /**
+     * Stores the type ordinal of an in-bounds cell.
+     *
+     * @param x the X-coordinate of the tile
+     * @param y the Y-coordinate of the tile
+     * @param t the {@link Tile.Type} ordinal to store
+     */
+    protected void write(int x, int y, byte t) {
+        tiles[index(x, y)] = t;
+    }
+
+    /**
+     * Reports whether {@link #readOriginal(int, int)} can be used: no tile has
+     * changed since the level was created, and the level can work out any
+     * tile's original type without holding the whole map, e.g. from a seed
+     * or a file. {@link TileSnapshot} then reads tiles it has not had to copy
+     * straight from there.
+     *
+     * @return {@code true} if the original tiles can be read; {@code false}
+     *         for a plain level, whose tiles are only in its array
+     */
+    protected boolean hasOriginalTiles() {
+        return false;
+    }
+
+    /**
+     * Reads the type ordinal an in-bounds cell had when the level was
+     * created, whatever has changed since. Unlike {@link #read(int, int)},
+     * this may be called from any thread.
+     *
+     * @param x the X-coordinate of the tile
+     * @param y the Y-coordinate of the tile
+     * @return the original {@link Tile.Type} ordinal of the cell
+     * @throws UnsupportedOperationException if the level does not keep
+     *         its original tiles
+     */
+    protected byte readOriginal(int x, int y) {
+        throw new UnsupportedOperationException("Level does not keep its original tiles");
     }
 
     /**
@@ -112,8 +311,8 @@ public class Level implements Serializable {
     public boolean isWalkable(int x, int y) {
         if (x < 0 || y < 0 || x >= width || y >= height)
             return false;
-        Tile.Type t = map[x][y].getType();
-        return t == Tile.Type.FLOOR || t == Tile.Type.EXIT;
+        byte t = read(x, y);
+        return t == FLOOR || t == EXIT;
     }
 
     /**
@@ -128,22 +327,36 @@ public class Level implements Serializable {
     public boolean destroyTile(int x, int y) {
         if (x < 0 || y < 0 || x >= width || y >= height)
             return false;
-        Tile t = map[x][y];
-        if (t.getType() == Tile.Type.SOFT_WALL) {
-            map[x][y] = new Tile(Tile.Type.FLOOR);
+        if (read(x, y) == SOFT_WALL) {
+            change(x, y, FLOOR);
         }
         return true;
     }
 
     /**
      * Retrieves the {@link Tile} at a specific coordinate.
+     * The returned tile is the shared flyweight for the cell's type.
      *
      * @param x the X-coordinate
      * @param y the Y-coordinate
      * @return the {@link Tile} at that position
      */
     public Tile getTile(int x, int y) {
-        return map[x][y];
+        return Tile.of(getType(x, y));
+    }
+
+    /**
+     * Retrieves the {@link Tile.Type} at a specific coordinate
+     * without going through a {@link Tile} object.
+     *
+     * @param x the X-coordinate
+     * @param y the Y-coordinate
+     * @return the type of the tile at that position
+     */
+    public Tile.Type getType(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height)
+            throw new IndexOutOfBoundsException("Tile (" + x + ", " + y + ") is outside the level");
+        return TYPES[read(x, y)];
     }
 
     /**
@@ -154,11 +367,65 @@ public class Level implements Serializable {
      * @param type the new {@link Tile.Type} to assign
      */
     public void setTile(int x, int y, Tile.Type type) {
-        if (x >= 0 && y >= 0 && x < width && y < height) {
-            map[x][y].setType(type);
+        if (x >= 0 && y >= 0 && x < width && y < height && read(x, y) != type.ordinal()) {
+            change(x, y, (byte) type.ordinal());
         }
     }
 
+    /**
+     * Stores a new type for an in-bounds cell and notifies the listeners.
+     *
+     * @param x the X-coordinate of the tile
+     * @param y the Y-coordinate of the tile
+     * @param t the new {@link Tile.Type} ordinal
+     */
+    private void change(int x, int y, byte t) {
+        changeHash ^= cellHash(x, y, read(x, y)) ^ cellHash(x, y, t);
+        write(x, y, t);
+        if (listeners != null) {
+            for (int i = 0; i < listeners.size(); i++) {
+                listeners.get(i).tileChanged(x, y, TYPES[t]);
+            }
+        }
+    }
+
+    private static long cellHash(int x, int y, byte t) {
+        return Rng.mix(Rng.mix((long) y << 32 | (x & 0xFFFFFFFFL)) ^ t);
+    }
+
+    /**
+     * Gets a hash of how the tiles differ from when this level object was
+     * created or read: the XOR, over every cell, of a hash of the cell with
+     * its original type and a hash of it with its current type. It is kept
+     * up to date as tiles change, so it costs nothing to read however large
+     * the map, and it is the same whatever order the changes were made in.
+     *
+     * @return the hash, 0 while no tile differs from the original
+     */
+    public long getChangeHash() {
+        return changeHash;
+    }
+
+    /**
+     * Registers an observer for tile changes made through {@link #setTile}
+     * and {@link #destroyTile}.
+     *
+     * @param l the listener to add
+     */
+    public void addTileListener(TileListener l) {
+        if (listeners == null) listeners = new ArrayList<>();
+        listeners.add(l);
+    }
+
+    /**
+     * Unregisters a tile change observer.
+     *
+     * @param l the listener to remove
+     */
+    public void removeTileListener(TileListener l) {
+        if (listeners != null) listeners.remove(l);
+    }
+
     /** @return width of the level */
     public int getWidth() { 
         return width; 
@@ -168,4 +435,9 @@ public class Level implements Serializable {
     public int getHeight() { 
         return height; 
     }
+
+    /** @return the seed the layout was generated from */
+    public long getSeed() {
+        return seed;
+    }
 }
@@ -0,0 +1,122 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * LevelConverter.java
+ *
+ * Command-line tool that converts a hand-authored level, drawn in Scene Builder
+ * as a {@code GridPane} of {@code Rectangle} nodes (such as {@code level0.fxml}),
+ * into the binary {@code .lvl} format read by {@link MappedLevel}.
+ *
+ * Every rectangle marks the cell at its {@code GridPane.columnIndex} and
+ * {@code GridPane.rowIndex} (missing indices mean 0). Its fill colour picks
+ * the tile type: gold is the exit, brown is a soft wall and anything else a
+ * hard wall. Cells without a rectangle are floor. The player spawns at (1, 1)
+ * and, if no gold cell is drawn, the exit is placed at the bottom-right
+ * corner inside the border.
+ *
+ * Usage: {@code java LevelConverter level0.fxml level0.lvl}
+ *
+ */
+public class LevelConverter {
+
+    /**
+     * Converts one FXML level into a level file.
+     *
+     * @param args the input FXML path and the output {@code .lvl} path
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: java LevelConverter <level.fxml> <level.lvl>");
+            System.exit(2);
+        }
+        try {
+            convert(Paths.get(args[0]), Paths.get(args[1]));
+        } catch (Exception e) {
+            System.err.println("Error converting " + args[0] + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads an FXML grid and writes it as a level file.
+     *
+     * @param fxml the FXML file to read
+     * @param out  the level file to write
+     * @throws Exception if the FXML cannot be parsed or the output written
+     */
+    public static void convert(Path fxml, Path out) throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(fxml.toFile());
+
+        NodeList rects = doc.getElementsByTagName("Rectangle");
+        int width = doc.getElementsByTagName("ColumnConstraints").getLength();
+        int height = doc.getElementsByTagName("RowConstraints").getLength();
+        int[] cells = new int[rects.getLength() * 3];
+        for (int i = 0; i < rects.getLength(); i++) {
+            Element r = (Element) rects.item(i);
+            int x = index(r, "GridPane.columnIndex");
+            int y = index(r, "GridPane.rowIndex");
+            cells[i * 3] = x;
+            cells[i * 3 + 1] = y;
+            cells[i * 3 + 2] = typeOf(r.getAttribute("fill")).ordinal();
+            width = Math.max(width, x + 1);
+            height = Math.max(height, y + 1);
+        }
+        if (width < 3 || height < 3)
+            throw new IOException("Level must be at least 3x3, found " + width + "x" + height);
+
+        byte[] tiles = new byte[width * height];
+        int exitX = width - 2, exitY = height - 2;
+        boolean exitDrawn = false;
+        for (int i = 0; i < cells.length; i += 3) {
+            tiles[cells[i + 1] * width + cells[i]] = (byte) cells[i + 2];
+            if (cells[i + 2] == Tile.Type.EXIT.ordinal()) {
+                exitX = cells[i];
+                exitY = cells[i + 1];
+                exitDrawn = true;
+            }
+        }
+        if (!exitDrawn) {
+            tiles[exitY * width + exitX] = (byte) Tile.Type.EXIT.ordinal();
+        }
+
+        Level level = new Level(width, height, tiles);
+        List<Enemy> enemies = new ArrayList<>();
+        MappedLevel.write(out, level, new Player(1, 1), enemies, exitX, exitY);
+        System.out.println("Wrote " + width + "x" + height + " level to " + out);
+    }
+
+    /**
+     * Reads a grid index attribute, which Scene Builder omits when it is 0.
+     *
+     * @param e    the rectangle element
+     * @param name the attribute name
+     * @return the index, or 0 if absent
+     */
+    private static int index(Element e, String name) {
+        String v = e.getAttribute(name);
+        return v.isEmpty() ? 0 : Integer.parseInt(v);
+    }
+
+    /**
+     * Maps a rectangle fill colour to a tile type.
+     *
+     * @param fill the {@code fill} attribute, e.g. {@code "#9e9e9e"} or {@code "GOLD"}
+     * @return the tile type the colour stands for
+     */
+    private static Tile.Type typeOf(String fill) {
+        String f = fill.toUpperCase();
+        if (f.equals("GOLD") || f.equals("#FFD700")) return Tile.Type.EXIT;
+        if (f.equals("SADDLEBROWN") || f.equals("#8B4513")) return Tile.Type.SOFT_WALL;
+        return Tile.Type.HARD_WALL;
+    }
+}
@@ -0,0 +1,285 @@
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MappedLevel.java
+ *
+ * A {@link Level} loaded from a binary {@code .lvl} file. The file is mapped
+ * into memory with {@link FileChannel#map} and tiles are read straight from
+ * the mapped buffer, so opening even a very large authored map costs a header
+ * check and nothing more; pages are faulted in as the game touches them.
+ *
+ * The mapping is read-only. Tiles changed during play are copied out into
+ * private 4 KB pages on first write, so they change this level only, never
+ * the file on disk.
+ *
+ * Since the tiles are not read at open, a tile byte that is not a
+ * {@link Tile.Type} ordinal is only found when the game reads it, and is
+ * reported then with an {@link IllegalStateException} naming the cell.
+ *
+ * File layout (big-endian):
+ *   int    magic ({@code "SLVL"})
+ *   int    format version
+ *   int    width, height
+ *   int    player spawn X, Y
+ *   int    exit X, Y
+ *   int    enemy count
+ *   enemy records: byte logo, int X, int Y
+ *   byte[] tiles, one {@link Tile.Type} ordinal per cell, row-major
+ *
+ */
+public class MappedLevel extends Level {
+    private static final long serialVersionUID = 1L;
+
+    /** The magic number at the start of every level file. */
+    public static final int MAGIC = 0x534C564C; // "SLVL"
+
+    /** The current level file format version. */
+    public static final int VERSION = 1;
+
+    /** Size of the fixed header in bytes. */
+    private static final int HEADER_BYTES = 36;
+
+    /** Size of one enemy spawn record in bytes. */
+    private static final int ENEMY_BYTES = 9;
+
+    /** Number of valid tile bytes: every {@link Tile.Type} ordinal is below it. */
+    private static final int TILE_TYPES = Tile.Type.values().length;
+
+    /** Size of a copy-on-write tile page as a power of two (4 KB). */
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+
+    /** The mapped file contents. */
+    private transient MappedByteBuffer buffer;
+
+    /** Tile pages that were written to, or {@code null} where the file is unchanged. */
+    private transient byte[][] pages;
+
+    /** Whether any tile has been written. */
+    private transient boolean changed;
+
+    /** Offset of the tile array within {@link #buffer}. */
+    private final int tilesOffset;
+
+    private final int playerX;
+    private final int playerY;
+    private final int exitX;
+    private final int exitY;
+
+    /** Enemy spawns as logo, X, Y triples. */
+    private final int[] enemySpawns;
+
+    /**
+     * Maps a level file.
+     *
+     * @param file the {@code .lvl} file to open
+     * @throws IOException if the file cannot be read or is not a valid level file
+     */
+    public MappedLevel(Path file) throws IOException {
+        this(map(file));
+    }
+
+    /**
+     * Reads the header of a mapped level file.
+     *
+     * @param buffer the mapped file contents
+     * @throws IOException if the file is not a valid level file
+     */
+    private MappedLevel(MappedByteBuffer buffer) throws IOException {
+        super(buffer.getInt(8), buffer.getInt(12), null);
+        if (buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a level file");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported level file version " + buffer.getInt(4));
+        this.buffer = buffer;
+        this.playerX = buffer.getInt(16);
+        this.playerY = buffer.getInt(20);
+        this.exitX = buffer.getInt(24);
+        this.exitY = buffer.getInt(28);
+
+        int count = buffer.getInt(32);
+        if (count < 0 || HEADER_BYTES + (long) count * ENEMY_BYTES > buffer.capacity())
+            throw new IOException("Corrupt enemy table");
+        enemySpawns = new int[count * 3];
+        int pos = HEADER_BYTES;
+        for (int i = 0; i < count; i++, pos += ENEMY_BYTES) {
+            enemySpawns[i * 3] = buffer.get(pos);
+            enemySpawns[i * 3 + 1] = buffer.getInt(pos + 1);
+            enemySpawns[i * 3 + 2] = buffer.getInt(pos + 5);
+        }
+        tilesOffset = pos;
+
+        if (getWidth() <= 0 || getHeight() <= 0
+                || tilesOffset + (long) getWidth() * getHeight() != buffer.capacity())
+            throw new IOException("Level size does not match file length");
+        pages = new byte[((getWidth() * getHeight()) >>> PAGE_BITS) + 1][];
+    }
+
+    /**
+     * Maps a whole file read-only.
+     *
+     * @param file the file to map
+     * @return the mapped contents
+     * @throws IOException if the file cannot be mapped
+     */
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_BYTES)
+                throw new IOException("Not a level file");
+            MappedByteBuffer buffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            return buffer;
+        }
+    }
+
+    @Override
+    protected byte read(int x, int y) {
+        int i = y * getWidth() + x;
+        byte[] page = pages[i >>> PAGE_BITS];
+        return page != null ? page[i & PAGE_MASK] : mapped(i);
+    }
+
+    @Override
+    protected void write(int x, int y, byte t) {
+        int i = y * getWidth() + x;
+        byte[] page = pages[i >>> PAGE_BITS];
+        if (page == null) {
+            page = new byte[1 << PAGE_BITS];
+            int start = i & ~PAGE_MASK;
+            int length = Math.min(page.length, getWidth() * getHeight() - start);
+            for (int k = 0; k < length; k++) page[k] = mapped(start + k);
+            pages[i >>> PAGE_BITS] = page;
+        }
+        page[i & PAGE_MASK] = t;
+        changed = true;
+    }
+
+    /** @return whether no tile has been written yet */
+    @Override
+    protected boolean hasOriginalTiles() {
+        return !changed;
+    }
+
+    /**
+     * Reads the tile from the file mapping, which is never written, so it is
+     * safe on any thread.
+     */
+    @Override
+    protected byte readOriginal(int x, int y) {
+        return mapped(y * getWidth() + x);
+    }
+
+    /**
+     * Reads a tile from the file mapping and checks that it is a tile type.
+     *
+     * @param i the cell number, row-major
+     * @return the {@link Tile.Type} ordinal stored for the cell
+     * @throws IllegalStateException if the file holds no tile type there
+     */
+    private byte mapped(int i) {
+        byte t = buffer.get(tilesOffset + i);
+        if ((t & 0xFF) >= TILE_TYPES)
+            throw new IllegalStateException("Corrupt tile data at (" + i % getWidth() + ", "
+                    + i / getWidth() + ") in level file: " + (t & 0xFF));
+        return t;
+    }
+
+    /** @return a new player standing on the spawn point */
+    public Player createPlayer() {
+        return new Player(playerX, playerY);
+    }
+
+    /** @return new enemies standing on their spawn points */
+    public List<Enemy> createEnemies() {
+        List<Enemy> enemies = new ArrayList<>();
+        for (int i = 0; i < enemySpawns.length; i += 3) {
+            enemies.add(Enemy.fromLogo((char) enemySpawns[i], enemySpawns[i + 1], enemySpawns[i + 2]));
+        }
+        return enemies;
+    }
+
+    /** @return the X-coordinate of the exit */
+    public int getExitX() {
+        return exitX;
+    }
+
+    /** @return the Y-coordinate of the exit */
+    public int getExitY() {
+        return exitY;
+    }
+
+    /**
+     * Writes a level and its spawn points as a {@code .lvl} file.
+     *
+     * @param file    the file to create or replace
+     * @param level   the level whose tiles are written
+     * @param player  the player at its spawn point
+     * @param enemies the enemies at their spawn points
+     * @param exitX   the X-coordinate of the exit
+     * @param exitY   the Y-coordinate of the exit
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, Level level, Player player, List<Enemy> enemies,
+                             int exitX, int exitY) throws IOException {
+        int width = level.getWidth();
+        int height = level.getHeight();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + enemies.size() * ENEMY_BYTES);
+        header.putInt(MAGIC).putInt(VERSION)
+              .putInt(width).putInt(height)
+              .putInt(player.getX()).putInt(player.getY())
+              .putInt(exitX).putInt(exitY)
+              .putInt(enemies.size());
+        for (Enemy e : enemies) {
+            header.put((byte) e.getLogo()).putInt(e.getX()).putInt(e.getY());
+        }
+        header.flip();
+
+        ByteBuffer row = ByteBuffer.allocate(width);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) ch.write(header);
+            for (int y = 0; y < height; y++) {
+                row.clear();
+                for (int x = 0; x < width; x++) {
+                    row.put((byte) level.getType(x, y).ordinal());
+                }
+                row.flip();
+                while (row.hasRemaining()) ch.write(row);
+            }
+        }
+    }
+
+    /**
+     * Serializes this level as a plain {@link Level} holding a copy of the
+     * tiles, since a mapped buffer cannot be serialized.
+     *
+     * @return the level to serialize in place of this one
+     * @throws ObjectStreamException if the file holds a byte that is not a tile type
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        int width = getWidth();
+        byte[] tiles = new byte[width * getHeight()];
+        buffer.get(tilesOffset, tiles, 0, tiles.length);
+        for (byte t : tiles) {
+            if ((t & 0xFF) >= TILE_TYPES)
+                throw new InvalidObjectException("Corrupt tile data in level file");
+        }
+        for (int p = 0; p < pages.length; p++) {
+            if (pages[p] != null) {
+                int start = p << PAGE_BITS;
+                System.arraycopy(pages[p], 0, tiles, start, Math.min(pages[p].length, tiles.length - start));
+            }
+        }
+        return new Level(width, getHeight(), tiles);
+    }
+}
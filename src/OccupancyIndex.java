@@ -0,0 +1,359 @@
+import java.util.Arrays;
+
+/**
+ * OccupancyIndex.java
+ *
+ * Spatial index answering "which entities stand on this cell?" in O(1).
+ * Every registered {@link Entity} gets a small integer id; the entities on a
+ * cell form a doubly linked list threaded through primitive {@code int} arrays,
+ * and each occupied cell maps to the id at the head of its list.
+ *
+ * Cell heads live in an open-addressing hash table keyed by cell number rather
+ * than a map-sized array, so the index costs memory per entity, not per tile,
+ * and works the same on a 13x11 level and a huge {@link ChunkedLevel}.
+ *
+ * Entities keep the index up to date themselves: {@link Entity#setPosition}
+ * reports every move once the entity has been added.
+ *
+ * The index also logs which ids were added, removed or moved since
+ * {@link #clearChanges()}, and where each stood before, so that
+ * {@link StateSnapshot}s can refreeze only the {@link EntityGrid} buckets
+ * that changed.
+ *
+ * Iterate a cell with:
+ * <pre>
+ * for (int id = index.first(x, y); id != OccupancyIndex.NONE; id = index.next(id)) {
+ *     Entity e = index.get(id);
+ * }
+ * </pre>
+ *
+ */
+public class OccupancyIndex {
+
+    /** Marks the end of a cell list, an empty slot, or a missing id. */
+    public static final int NONE = -1;
+
+    /** Former cell of an id that held no entity at the last {@link #clearChanges()}. */
+    private static final long NOWHERE = -1;
+
+    /** Width of the indexed level, used to number cells. */
+    private final long width;
+
+    // ---------------- Entity lists ----------------
+
+    private Entity[] entities = new Entity[16];
+    private int[] next = new int[16];
+    private int[] prev = new int[16];
+    private long[] cellOf = new long[16];
+    /** Head of the list of recycled ids. */
+    private int free = NONE;
+    /** Number of ids handed out so far, including recycled ones. */
+    private int used;
+
+    // ---------------- Change log ----------------
+
+    /** Ids added, removed or moved since {@link #clearChanges()}, each once. */
+    private int[] changed = new int[16];
+    private int changeCount;
+    /** Per id: whether it is in {@link #changed}, and the cell it held before, or {@link #NOWHERE}. */
+    private boolean[] isChanged = new boolean[16];
+    private long[] formerCell = new long[16];
+
+    // ---------------- Cell -> head id table ----------------
+
+    private long[] keys = new long[32];
+    private int[] heads = new int[32];
+    private int occupied;
+
+    /**
+     * Constructs an empty index for a level of the given width.
+     *
+     * @param width width of the level in tiles
+     */
+    public OccupancyIndex(int width) {
+        this.width = width;
+        Arrays.fill(heads, NONE);
+    }
+
+    /**
+     * Registers an entity at its current position.
+     *
+     * @param e the entity to add; must not already belong to an index
+     */
+    public void add(Entity e) {
+        if (e.index != null)
+            throw new IllegalStateException("Entity is already indexed");
+        int id;
+        if (free != NONE) {
+            id = free;
+            free = next[id];
+        } else {
+            if (used == entities.length) grow();
+            id = used++;
+        }
+        logChange(id, NOWHERE);
+        entities[id] = e;
+        e.index = this;
+        e.indexId = id;
+        link(id, cell(e.getX(), e.getY()));
+    }
+
+    /**
+     * Unregisters an entity. Does nothing if it is not in this index.
+     *
+     * @param e the entity to remove
+     */
+    public void remove(Entity e) {
+        if (e.index != this) return;
+        int id = e.indexId;
+        logChange(id, cellOf[id]);
+        unlink(id);
+        entities[id] = null;
+        next[id] = free;
+        free = id;
+        e.index = null;
+        e.indexId = NONE;
+    }
+
+    /**
+     * Moves an indexed entity to the cell of its current coordinates.
+     * Called by {@link Entity#setPosition}.
+     *
+     * @param e the entity that moved
+     */
+    void moved(Entity e) {
+        int id = e.indexId;
+        long c = cell(e.getX(), e.getY());
+        if (cellOf[id] == c) return;
+        logChange(id, cellOf[id]);
+        unlink(id);
+        link(id, c);
+    }
+
+    /**
+     * Gets the number of ids added, removed or moved to another cell since
+     * the last {@link #clearChanges()}, each counted once however often it
+     * changed. An id removed and handed out again counts once too.
+     *
+     * @return the number of changed ids
+     */
+    public int getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * @param i a change, from 0 to {@link #getChangeCount()} - 1
+     * @return the id that changed; {@link #get} gives the entity holding it
+     *         now, or {@code null} if it was removed
+     */
+    public int getChangedId(int i) {
+        return changed[i];
+    }
+
+    /**
+     * @param i a change, from 0 to {@link #getChangeCount()} - 1
+     * @return whether the id held an entity at the last {@link #clearChanges()}
+     */
+    public boolean wasIndexed(int i) {
+        return formerCell[changed[i]] != NOWHERE;
+    }
+
+    /**
+     * @param i a change whose id {@link #wasIndexed}
+     * @return the X-coordinate the id stood on at the last {@link #clearChanges()}
+     */
+    public int getFormerX(int i) {
+        return (int) (formerCell[changed[i]] % width);
+    }
+
+    /**
+     * @param i a change whose id {@link #wasIndexed}
+     * @return the Y-coordinate the id stood on at the last {@link #clearChanges()}
+     */
+    public int getFormerY(int i) {
+        return (int) (formerCell[changed[i]] / width);
+    }
+
+    /**
+     * @param id an entity id
+     * @return whether the id was added, removed or moved since the last
+     *         {@link #clearChanges()}
+     */
+    public boolean isChanged(int id) {
+        return isChanged[id];
+    }
+
+    /** Empties the change log, once every change has been seen. */
+    public void clearChanges() {
+        for (int i = 0; i < changeCount; i++) isChanged[changed[i]] = false;
+        changeCount = 0;
+    }
+
+    /**
+     * Returns the id of the first entity on a cell.
+     *
+     * @param x the X-coordinate of the cell
+     * @param y the Y-coordinate of the cell
+     * @return an entity id, or {@link #NONE} if the cell is empty
+     */
+    public int first(int x, int y) {
+        int slot = find(cell(x, y));
+        return slot < 0 ? NONE : heads[slot];
+    }
+
+    /**
+     * Returns the id of the next entity on the same cell.
+     *
+     * @param id an entity id
+     * @return the next id, or {@link #NONE} at the end of the cell
+     */
+    public int next(int id) {
+        return next[id];
+    }
+
+    /**
+     * Looks up an entity by id.
+     *
+     * @param id an entity id returned by {@link #first} or {@link #next}
+     * @return the entity
+     */
+    public Entity get(int id) {
+        return entities[id];
+    }
+
+    /**
+     * Finds a bomb lying on a cell.
+     *
+     * @param x the X-coordinate of the cell
+     * @param y the Y-coordinate of the cell
+     * @return a bomb on the cell, or {@code null} if there is none
+     */
+    public Bomb bombAt(int x, int y) {
+        for (int id = first(x, y); id != NONE; id = next[id]) {
+            if (entities[id] instanceof Bomb) return (Bomb) entities[id];
+        }
+        return null;
+    }
+
+    /**
+     * Counts the enemies standing on a cell.
+     *
+     * @param x the X-coordinate of the cell
+     * @param y the Y-coordinate of the cell
+     * @return the number of enemies on the cell
+     */
+    public int enemiesAt(int x, int y) {
+        int n = 0;
+        for (int id = first(x, y); id != NONE; id = next[id]) {
+            if (entities[id] instanceof Enemy) n++;
+        }
+        return n;
+    }
+
+    // ---------------- Internals ----------------
+
+    private long cell(int x, int y) {
+        return y * width + x;
+    }
+
+    /** Logs an id's first change since the last {@link #clearChanges()}, with the cell it held. */
+    private void logChange(int id, long cell) {
+        if (isChanged[id]) return;
+        isChanged[id] = true;
+        formerCell[id] = cell;
+        if (changeCount == changed.length) changed = Arrays.copyOf(changed, changeCount * 2);
+        changed[changeCount++] = id;
+    }
+
+    /** Puts an id at the front of a cell's list. */
+    private void link(int id, long c) {
+        cellOf[id] = c;
+        prev[id] = NONE;
+        int slot = find(c);
+        if (slot < 0) {
+            next[id] = NONE;
+            insert(c, id);
+        } else {
+            int h = heads[slot];
+            next[id] = h;
+            prev[h] = id;
+            heads[slot] = id;
+        }
+    }
+
+    /** Takes an id out of its cell's list. */
+    private void unlink(int id) {
+        int p = prev[id], n = next[id];
+        if (n != NONE) prev[n] = p;
+        if (p != NONE) {
+            next[p] = n;
+        } else {
+            int slot = find(cellOf[id]);
+            if (n != NONE) heads[slot] = n;
+            else delete(slot);
+        }
+    }
+
+    private void grow() {
+        int size = entities.length * 2;
+        entities = Arrays.copyOf(entities, size);
+        next = Arrays.copyOf(next, size);
+        prev = Arrays.copyOf(prev, size);
+        cellOf = Arrays.copyOf(cellOf, size);
+        isChanged = Arrays.copyOf(isChanged, size);
+        formerCell = Arrays.copyOf(formerCell, size);
+    }
+
+    private int slotOf(long c) {
+        long h = c * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (keys.length - 1);
+    }
+
+    /** @return the table slot holding a cell, or -1 if the cell is empty */
+    private int find(long c) {
+        int mask = keys.length - 1;
+        for (int s = slotOf(c); heads[s] != NONE; s = (s + 1) & mask) {
+            if (keys[s] == c) return s;
+        }
+        return -1;
+    }
+
+    private void insert(long c, int head) {
+        if ((occupied + 1) * 2 > keys.length) rehash(keys.length * 2);
+        int mask = keys.length - 1;
+        int s = slotOf(c);
+        while (heads[s] != NONE) s = (s + 1) & mask;
+        keys[s] = c;
+        heads[s] = head;
+        occupied++;
+    }
+
+    /** Empties a slot, shifting later entries of the probe run back into place. */
+    private void delete(int s) {
+        int mask = keys.length - 1;
+        heads[s] = NONE;
+        occupied--;
+        for (int i = (s + 1) & mask; heads[i] != NONE; i = (i + 1) & mask) {
+            int home = slotOf(keys[i]);
+            // move entry i into the hole if its home slot is not between the hole and i
+            if (((i - home) & mask) >= ((i - s) & mask)) {
+                keys[s] = keys[i];
+                heads[s] = heads[i];
+                heads[i] = NONE;
+                s = i;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldHeads = heads;
+        keys = new long[capacity];
+        heads = new int[capacity];
+        Arrays.fill(heads, NONE);
+        occupied = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHeads[i] != NONE) insert(oldKeys[i], oldHeads[i]);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+import java.nio.IntBuffer;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Node;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * PixelBufferView.java
+ *
+ * The pixel-buffer render mode: a {@link TileRasterizer} draws each frame
+ * into its pixel array, and a JavaFX {@link PixelBuffer} wraps that same array
+ * as the backing store of the image on screen, so no pixels are copied
+ * between the game and the scene graph. After each frame only the rectangle
+ * the rasterizer repainted is reported to JavaFX for upload.
+ *
+ * Must be used on the JavaFX Application Thread.
+ *
+ */
+public class PixelBufferView {
+
+    private final TileRasterizer rasterizer;
+    private final PixelBuffer<IntBuffer> buffer;
+    private final ImageView view;
+
+    /**
+     * Constructs a view of a given size.
+     *
+     * @param columns  tiles across the view
+     * @param rows     tiles down the view
+     * @param tileSize the side of a tile in pixels
+     * @param atlas    the sprites, or {@code null} to draw shapes only
+     */
+    public PixelBufferView(int columns, int rows, int tileSize, SpriteAtlas atlas) {
+        rasterizer = new TileRasterizer(columns, rows, tileSize, atlas);
+        IntBuffer pixels = IntBuffer.wrap(rasterizer.getPixels());
+        buffer = new PixelBuffer<>(rasterizer.getWidth(), rasterizer.getHeight(), pixels,
+                PixelFormat.getIntArgbPreInstance());
+        view = new ImageView(new WritableImage(buffer));
+    }
+
+    /** @return the node showing the frames */
+    public Node getNode() {
+        return view;
+    }
+
+    /**
+     * Makes the next frame repaint the whole view.
+     */
+    public void invalidate() {
+        rasterizer.invalidate();
+    }
+
+    /**
+     * Draws a frame and hands the repainted area to JavaFX.
+     *
+     * @param state  the state to draw
+     * @param camera the part of the level to draw
+     */
+    public void render(StateSnapshot state, Camera camera) {
+        rasterizer.render(state, camera);
+        if (rasterizer.getDirtyWidth() == 0) return;
+        buffer.updateBuffer(b -> new Rectangle2D(rasterizer.getDirtyX(), rasterizer.getDirtyY(),
+                rasterizer.getDirtyWidth(), rasterizer.getDirtyHeight()));
+    }
+}
@@ -34,6 +34,20 @@ public class Player extends Entity implements Movable, Serializable {
         this.score = 0;
     }
 
+    /**
+     * Constructs a Player with saved lives and bombs, for loading a game.
+     *
+     * @param x              X coordinate
+     * @param y              Y coordinate
+     * @param lives          lives left
+     * @param availableBombs bombs that can be placed now
+     */
+    Player(int x, int y, int lives, int availableBombs) {
+        super(x, y);
+        this.lives = lives;
+        this.availableBombs = availableBombs;
+    }
+
     /**
      * Moves the player if the target tile is walkable (Not a Wall).
      *
@@ -45,9 +59,9 @@ public class Player extends Entity implements Movable, Serializable {
     public void move(int dx, int dy, Level level) {
         int nx = getX() + dx;
         int ny = getY() + dy;
-        Tile tile = level.getTile(nx, ny);
+        Tile.Type type = level.getType(nx, ny);
         
-        if (tile.getType() != Tile.Type.HARD_WALL && tile.getType() != Tile.Type.SOFT_WALL) {
+        if (type != Tile.Type.HARD_WALL && type != Tile.Type.SOFT_WALL) {
             setPosition(nx, ny);
         }
     }
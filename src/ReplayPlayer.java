@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * ReplayPlayer.java
+ *
+ * Plays a replay recorded by {@link ReplayRecorder} on a headless
+ * {@link Game}, as fast as the CPU allows, and checks the state against every
+ * recorded checksum on the way. A replay that passes reproduced the original
+ * run turn for turn; one that fails names the first checkpoint where the
+ * state differed, and the game is left at that turn to be inspected.
+ *
+ * Playing can also stop at a chosen turn, to look at a reported game just
+ * before something went wrong.
+ *
+ * Usage: {@code java ReplayPlayer <replay.rpl> [turn]}
+ *
+ */
+public class ReplayPlayer {
+
+    /**
+     * The outcome of playing a replay.
+     */
+    public static final class Result {
+        private final Game game;
+        private final int checkpoints;
+        private final int mismatchTurn;
+
+        Result(Game game, int checkpoints, int mismatchTurn) {
+            this.game = game;
+            this.checkpoints = checkpoints;
+            this.mismatchTurn = mismatchTurn;
+        }
+
+        /** @return the game, at the turn the replay stopped */
+        public Game getGame() {
+            return game;
+        }
+
+        /** @return the number of checksums that matched */
+        public int getCheckpoints() {
+            return checkpoints;
+        }
+
+        /**
+         * @return the first turn where the game differed from the recording,
+         *         by its checksum or by ending early, or -1 if it did not
+         */
+        public int getMismatchTurn() {
+            return mismatchTurn;
+        }
+
+        /** @return whether the game matched the recording as far as it was played */
+        public boolean isValid() {
+            return mismatchTurn < 0;
+        }
+    }
+
+    /**
+     * Plays a whole replay.
+     *
+     * @param replay the recording, from {@link ReplayRecorder#toByteArray()}
+     * @return how the replay went
+     * @throws IOException if the data is not a valid replay
+     */
+    public static Result verify(byte[] replay) throws IOException {
+        return play(replay, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Plays a replay up to a turn, or to its end if that comes first.
+     *
+     * @param replay   the recording, from {@link ReplayRecorder#toByteArray()}
+     * @param stopTurn the turn to stop at, before the keys pressed on it
+     * @return how the replay went
+     * @throws IOException if the data is not a valid replay
+     */
+    public static Result play(byte[] replay, int stopTurn) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(replay);
+        try {
+            if (in.getInt() != ReplayRecorder.MAGIC)
+                throw new IOException("Not a replay file");
+            int version = in.getInt();
+            if (version != ReplayRecorder.VERSION)
+                throw new IOException("Unsupported replay file version " + version);
+            Game game = new Game(in.getLong());
+            getVarint(in); // checkpoint interval; checkpoints are read as they come
+
+            int turn = 0, checkpoints = 0;
+            while (true) {
+                long entry = getVarint(in);
+                int tag = (int) (entry & ((1 << ReplayRecorder.TAG_BITS) - 1));
+                turn += (int) (entry >>> ReplayRecorder.TAG_BITS);
+                if (turn > stopTurn || turn == stopTurn && tag != ReplayRecorder.TAG_CHECKPOINT) {
+                    advance(game, stopTurn);
+                    return new Result(game, checkpoints, -1);
+                }
+                if (!advance(game, turn)) {
+                    return new Result(game, checkpoints, turn); // the recorded game was still going
+                }
+                if (tag < ReplayRecorder.COMMANDS.length) {
+                    game.processPlayerInput(ReplayRecorder.COMMANDS[tag]);
+                } else if (tag == ReplayRecorder.TAG_CHECKPOINT) {
+                    if (in.getInt() != (int) game.getState().checksum()) {
+                        return new Result(game, checkpoints, turn);
+                    }
+                    checkpoints++;
+                } else if (tag == ReplayRecorder.TAG_END) {
+                    return new Result(game, checkpoints, -1);
+                } else {
+                    throw new IOException("Corrupt replay entry");
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Replay is truncated", e);
+        }
+    }
+
+    /**
+     * Ticks a game until its turn counter reaches a turn.
+     *
+     * @param game the game
+     * @param turn the turn to reach
+     * @return {@code false} if the game ended first
+     */
+    private static boolean advance(Game game, int turn) {
+        while (game.getState().getTurnCounter() < turn) {
+            if (game.isGameOver()) return false;
+            game.updateGameLogic();
+        }
+        return true;
+    }
+
+    private static long getVarint(ByteBuffer in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+        throw new IOException("Corrupt replay entry");
+    }
+
+    /**
+     * Draws the level with its entities as text, one character per tile.
+     *
+     * @param state the state to draw
+     * @return the map, one line per row
+     */
+    static String toText(GameState state) {
+        Level level = state.getLevel();
+        int width = level.getWidth();
+        char[][] rows = new char[level.getHeight()][width];
+        for (int y = 0; y < rows.length; y++) {
+            for (int x = 0; x < width; x++) rows[y][x] = level.getTile(x, y).getSymbol();
+        }
+        for (Bomb b : state.getBombs()) rows[b.getY()][b.getX()] = 'B';
+        for (Enemy e : state.getEnemies()) rows[e.getY()][e.getX()] = e.getLogo();
+        rows[state.getPlayer().getY()][state.getPlayer().getX()] = 'P';
+        StringBuilder out = new StringBuilder();
+        for (char[] row : rows) out.append(row).append('\n');
+        return out.toString();
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: java ReplayPlayer <replay.rpl> [turn]");
+            System.exit(2);
+        }
+        try {
+            byte[] replay = Files.readAllBytes(Paths.get(args[0]));
+            int stopTurn = args.length > 1 ? Integer.parseInt(args[1]) : Integer.MAX_VALUE;
+            long start = System.nanoTime();
+            Result r = play(replay, stopTurn);
+            double ms = (System.nanoTime() - start) / 1e6;
+            GameState state = r.getGame().getState();
+            if (r.isValid()) {
+                System.out.printf("Replayed %d turns, %d checkpoints matched, in %.2f ms%n",
+                        state.getTurnCounter(), r.getCheckpoints(), ms);
+            } else {
+                System.out.printf("Replay diverged at turn %d (%d checkpoints matched before it)%n",
+                        r.getMismatchTurn(), r.getCheckpoints());
+            }
+            System.out.printf("Turn %d, lives %d, bombs %d, enemies %d%s%n", state.getTurnCounter(),
+                    state.getPlayer().getLives(), state.getPlayer().getAvailableBombs(), state.getEnemies().size(),
+                    r.getGame().isGameOver() ? (r.getGame().isVictory() ? ", won" : ", lost") : "");
+            System.out.print(toText(state));
+            if (!r.isValid()) System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Error reading " + args[0] + ": " + e.getMessage());
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * ReplayRecorder.java
+ *
+ * Records a game as its seed plus the keys pressed, so the run can be played
+ * again exactly by {@link ReplayPlayer}: with the level, the enemies' random
+ * streams (see {@link Rng}) and the rules all decided by the seed, the keys
+ * and the turns they were pressed on are the only other input.
+ *
+ * Every few turns the recorder also stores a 32-bit {@link GameState#checksum()}
+ * of the state, so a replay that goes differently, e.g. after a change to the
+ * rules or a nondeterminism bug, is caught at the first checkpoint after it
+ * happens.
+ *
+ * Entries are varints of the turns since the previous entry, shifted left by
+ * three, with a tag in the low bits; a game with a key every few turns takes
+ * about one byte per key, plus five bytes per checkpoint.
+ *
+ * File layout (big-endian):
+ *   int    magic ({@code "SRPL"})
+ *   int    format version
+ *   long   game seed, as for {@link Game#Game(long)}
+ *   varint turns between checkpoints
+ *   entries: varint (turn delta &lt;&lt; 3 | tag), where the tag is
+ *     0-4    the key W, S, A, D or B, applied before the turn's tick
+ *     5      a checkpoint, followed by the int checksum after that many ticks
+ *     6      the end of the recording
+ *
+ * Only keys that change the game are recorded; Z (save) is left out. X
+ * (load) swaps in a state the seed cannot reproduce, so the recording ends
+ * there.
+ *
+ */
+public class ReplayRecorder {
+
+    /** The magic number at the start of every replay file. */
+    public static final int MAGIC = 0x5352504C; // "SRPL"
+
+    /** The current replay file format version. */
+    public static final int VERSION = 2;
+
+    /** The file the game records its replay to. */
+    public static final Path DEFAULT_FILE = Paths.get("shadow-escape.rpl");
+
+    /** Recorded keys, by tag. */
+    static final String[] COMMANDS = { "W", "S", "A", "D", "B" };
+
+    static final int TAG_CHECKPOINT = 5;
+    static final int TAG_END = 6;
+    static final int TAG_BITS = 3;
+
+    private final int checkpointEvery;
+
+    private byte[] data = new byte[256];
+    private int size;
+
+    /** Turn of the last entry written, and the latest turn seen. */
+    private int entryTurn;
+    private int turn;
+
+    /** Whether a load ended the recording. */
+    private boolean ended;
+
+    /**
+     * Starts a recording of a game created with {@link Game#Game(long)} or
+     * {@link Game#Game()}, before its first tick.
+     *
+     * @param seed            the game seed, from {@link GameState#getSeed()}
+     * @param checkpointEvery the number of turns between checksums
+     */
+    public ReplayRecorder(long seed, int checkpointEvery) {
+        if (checkpointEvery <= 0) throw new IllegalArgumentException("Checkpoint interval must be positive: " + checkpointEvery);
+        this.checkpointEvery = checkpointEvery;
+        putInt(MAGIC);
+        putInt(VERSION);
+        putInt((int) (seed >>> 32));
+        putInt((int) seed);
+        putVarint(checkpointEvery);
+    }
+
+    /**
+     * Records a key press. Call on the game thread just before the key is
+     * applied.
+     *
+     * @param turn  the turn counter when the key is applied
+     * @param input the key, as for {@link Game#processPlayerInput(String)}
+     */
+    public void input(int turn, String input) {
+        if (ended) return;
+        this.turn = turn;
+        switch (input) {
+            case "W": entry(turn, 0); break;
+            case "S": entry(turn, 1); break;
+            case "A": entry(turn, 2); break;
+            case "D": entry(turn, 3); break;
+            case "B": entry(turn, 4); break;
+            case "X": ended = true; break; // a loaded state cannot be replayed from the seed
+            default: break; // Z and unknown keys do not change the game
+        }
+    }
+
+    /**
+     * Notes a tick, storing a checksum of the state if a checkpoint is due.
+     * Call on the game thread after every tick.
+     *
+     * @param state the state after the tick
+     */
+    public void tick(GameState state) {
+        if (ended) return;
+        turn = state.getTurnCounter();
+        if (turn % checkpointEvery == 0) {
+            entry(turn, TAG_CHECKPOINT);
+            putInt((int) state.checksum());
+        }
+    }
+
+    /** @return the recording so far, ending at the latest turn seen */
+    public byte[] toByteArray() {
+        int length = size, last = entryTurn;
+        entry(turn, TAG_END);
+        byte[] out = Arrays.copyOf(data, size);
+        size = length; // recording may go on
+        entryTurn = last;
+        return out;
+    }
+
+    /**
+     * Writes the recording so far.
+     *
+     * @param file the file to create or replace
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path file) throws IOException {
+        Files.write(file, toByteArray());
+    }
+
+    private void entry(int turn, int tag) {
+        putVarint((long) (turn - entryTurn) << TAG_BITS | tag);
+        entryTurn = turn;
+    }
+
+    private void putVarint(long v) {
+        while ((v & ~0x7FL) != 0) {
+            put((byte) (v | 0x80));
+            v >>>= 7;
+        }
+        put((byte) v);
+    }
+
+    private void putInt(int v) {
+        put((byte) (v >>> 24));
+        put((byte) (v >>> 16));
+        put((byte) (v >>> 8));
+        put((byte) v);
+    }
+
+    private void put(byte b) {
+        if (size == data.length) data = Arrays.copyOf(data, size * 2);
+        data[size++] = b;
+    }
+}
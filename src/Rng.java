@@ -0,0 +1,70 @@
+/**
+ * Rng.java
+ *
+ * Seed mixing for the game's deterministic random streams.
+ *
+ * A game has one seed. Every entity that needs randomness gets its own
+ * stream derived from that seed and a stream number handed out in a fixed
+ * order (see {@link GameState#newStream()}). A stream is a single
+ * {@code long} of state advanced SplitMix64-style, the same generator as
+ * {@link java.util.SplittableRandom}, so streams cost eight bytes each, save
+ * with their owner, and replay exactly, with no shared or synchronized
+ * generator between entities or between games run in parallel.
+ *
+ */
+public final class Rng {
+
+    /** Odd increment between successive states of a stream (2^64 / phi). */
+    public static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private Rng() {
+    }
+
+    /**
+     * Scrambles 64 bits so that nearby inputs give unrelated outputs
+     * (the SplitMix64 finalizer).
+     *
+     * @param z the value to mix
+     * @return the mixed value
+     */
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Derives the starting state of stream number {@code index} of a seed.
+     * Different indexes give independent streams.
+     *
+     * @param seed  the game seed
+     * @param index the stream number
+     * @return the initial state of the stream
+     */
+    public static long stream(long seed, long index) {
+        return mix(mix(seed) + index * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Advances a stream state by one draw.
+     *
+     * @param state the current state
+     * @return the next state
+     */
+    public static long next(long state) {
+        return state + GOLDEN_GAMMA;
+    }
+
+    /**
+     * Turns a stream state into a number from 0 (inclusive) to {@code bound}
+     * (exclusive), using the high bits so small bounds are not biased by the
+     * low bits.
+     *
+     * @param state a state returned by {@link #next(long)}
+     * @param bound the upper bound, positive
+     * @return the drawn number
+     */
+    public static int bounded(long state, int bound) {
+        return (int) (((mix(state) >>> 32) * bound) >>> 32);
+    }
+}
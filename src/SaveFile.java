@@ -0,0 +1,270 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SaveFile.java
+ *
+ * Reads and writes a {@link GameState} as a compact binary {@code .sav} file.
+ * Java serialization of a state writes class descriptors, an object per
+ * entity and the level as one object graph; this format writes fixed-size
+ * records instead: one byte per tile, a packed record per enemy and bomb,
+ * and the few counters the game needs to carry on, including each enemy's
+ * random stream. A 1024x1024 level saves to little more than its 1 MB of
+ * tiles.
+ *
+ * Saves are written from a {@link StateSnapshot} taken with
+ * {@link GameState#snapshotForSave()}, so a thread other than the game's,
+ * such as the {@link Autosaver}, can write one while the game goes on.
+ *
+ * Files are written and read through a {@link FileChannel} in blocks of a
+ * direct buffer, so bytes go between the buffer and the file without an
+ * extra copy on the Java heap. Each thread keeps one buffer for all its
+ * saves and loads.
+ *
+ * Burning blasts are not saved, as with Java serialization; they only
+ * show where the last explosions were.
+ *
+ * File layout (big-endian):
+ *   int    magic ({@code "SSAV"})
+ *   int    format version
+ *   int    width, height
+ *   long   level seed
+ *   long   game seed, random streams handed out
+ *   int    turn counter
+ *   int    player X, Y, lives, available bombs
+ *   int    enemy count, bomb count
+ *   enemy records: byte logo, int X, int Y, long random stream state
+ *   bomb records: int X, int Y, int timer, int range, int due turn
+ *   byte[] tiles, one {@link Tile.Type} ordinal per cell, row-major
+ *
+ */
+public final class SaveFile {
+
+    /** The magic number at the start of every save file. */
+    public static final int MAGIC = 0x53534156; // "SSAV"
+
+    /** The current save file format version. */
+    public static final int VERSION = 1;
+
+    /** The file the Z and X keys save to and load from. */
+    public static final Path DEFAULT_FILE = Paths.get("shadow-escape.sav");
+
+    /** Size of the fixed header in bytes. */
+    private static final int HEADER_BYTES = 68;
+
+    /** Size of one enemy record in bytes. */
+    private static final int ENEMY_BYTES = 17;
+
+    /** Size of one bomb record in bytes. */
+    private static final int BOMB_BYTES = 20;
+
+    /** Size of the direct buffer each thread reads and writes through. */
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.BIG_ENDIAN));
+
+    private SaveFile() {
+    }
+
+    /**
+     * Saves a state as it is now, replacing the file if it exists. Must be
+     * called on the thread that updates the game.
+     *
+     * @param file  the file to write
+     * @param state the state to save
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, GameState state) throws IOException {
+        write(file, state.snapshotForSave());
+    }
+
+    /**
+     * Saves a snapshot, replacing the file if it exists.
+     *
+     * @param file  the file to write
+     * @param state the snapshot to save, taken with {@link GameState#snapshotForSave()}
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, StateSnapshot state) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(ch, state);
+        }
+    }
+
+    /**
+     * Saves a snapshot at the channel's position.
+     *
+     * @param ch    the channel to write to
+     * @param state the snapshot to save, taken with {@link GameState#snapshotForSave()}
+     * @throws IOException if the channel cannot be written
+     */
+    public static void write(WritableByteChannel ch, StateSnapshot state) throws IOException {
+        if (!state.hasRandomStates())
+            throw new IllegalArgumentException("Snapshot was not taken for saving");
+        TileSnapshot tiles = state.getTiles();
+        EntitySnapshot player = state.getPlayer();
+        List<EntitySnapshot> enemies = state.getEnemies();
+        List<EntitySnapshot> bombs = state.getBombs();
+        int width = tiles.getWidth();
+        int height = tiles.getHeight();
+
+        ByteBuffer buf = BUFFERS.get();
+        buf.clear();
+        buf.putInt(MAGIC).putInt(VERSION)
+           .putInt(width).putInt(height)
+           .putLong(state.getLevelSeed())
+           .putLong(state.getSeed()).putLong(state.getStreamCount())
+           .putInt(state.getTurn())
+           .putInt(player.getX()).putInt(player.getY())
+           .putInt(state.getLives()).putInt(state.getAvailableBombs())
+           .putInt(enemies.size()).putInt(bombs.size());
+        for (int i = 0; i < enemies.size(); i++) {
+            EntitySnapshot e = enemies.get(i);
+            if (buf.remaining() < ENEMY_BYTES) drain(ch, buf);
+            buf.put((byte) e.getLogo()).putInt(e.getX()).putInt(e.getY()).putLong(state.getRandomState(i));
+        }
+        for (EntitySnapshot b : bombs) {
+            if (buf.remaining() < BOMB_BYTES) drain(ch, buf);
+            buf.putInt(b.getX()).putInt(b.getY())
+               .putInt(b.getTimer()).putInt(b.getRange()).putInt(b.getDueTurn());
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; ) {
+                if (!buf.hasRemaining()) drain(ch, buf);
+                int n = Math.min(width - x, buf.remaining());
+                tiles.readRow(x, y, n, buf);
+                x += n;
+            }
+        }
+        drain(ch, buf);
+    }
+
+    /**
+     * Loads a state. The level comes back as a plain in-memory {@link Level}
+     * whatever kind it was saved from.
+     *
+     * @param file the file to read
+     * @return the saved state, with its indexes rebuilt
+     * @throws IOException if the file cannot be read or is not a valid save file
+     */
+    public static GameState read(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(ch);
+        }
+    }
+
+    /**
+     * Loads a state from the channel's position to its end.
+     *
+     * @param ch the channel to read from
+     * @return the saved state, with its indexes rebuilt
+     * @throws IOException if the channel cannot be read or does not hold a valid save
+     */
+    public static GameState read(FileChannel ch) throws IOException {
+        long size = ch.size() - ch.position();
+        ByteBuffer buf = BUFFERS.get();
+        buf.clear().limit(0);
+
+        fill(ch, buf, HEADER_BYTES);
+        if (buf.getInt() != MAGIC)
+            throw new IOException("Not a save file");
+        int version = buf.getInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported save file version " + version);
+        int width = buf.getInt();
+        int height = buf.getInt();
+        long levelSeed = buf.getLong();
+        long seed = buf.getLong();
+        long streams = buf.getLong();
+        int turn = buf.getInt();
+        int px = buf.getInt(), py = buf.getInt();
+        int lives = buf.getInt(), availableBombs = buf.getInt();
+        int enemyCount = buf.getInt();
+        int bombCount = buf.getInt();
+        if (width <= 0 || height <= 0 || enemyCount < 0 || bombCount < 0
+                || HEADER_BYTES + (long) enemyCount * ENEMY_BYTES + (long) bombCount * BOMB_BYTES
+                   + (long) width * height != size)
+            throw new IOException("Save file size does not match its header");
+
+        List<Enemy> enemies = new ArrayList<>(enemyCount);
+        long[] streamStates = new long[enemyCount];
+        for (int i = 0; i < enemyCount; i++) {
+            fill(ch, buf, ENEMY_BYTES);
+            char logo = (char) buf.get();
+            int x = buf.getInt(), y = buf.getInt();
+            streamStates[i] = buf.getLong();
+            try {
+                enemies.add(Enemy.fromLogo(logo, x, y));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt enemy record", e);
+            }
+        }
+        List<Bomb> bombs = new ArrayList<>(bombCount);
+        for (int i = 0; i < bombCount; i++) {
+            fill(ch, buf, BOMB_BYTES);
+            Bomb b = new Bomb(buf.getInt(), buf.getInt(), buf.getInt(), buf.getInt());
+            b.arm(buf.getInt() - b.getTimer() + 1);
+            bombs.add(b);
+        }
+        byte[] tiles = new byte[width * height];
+        for (int at = 0; at < tiles.length; ) {
+            if (!buf.hasRemaining()) fill(ch, buf, 1);
+            int n = Math.min(tiles.length - at, buf.remaining());
+            buf.get(tiles, at, n);
+            at += n;
+        }
+        for (byte t : tiles) {
+            if (t < 0 || t >= Tile.Type.values().length)
+                throw new IOException("Corrupt tile data");
+        }
+
+        GameState state = new GameState(new Level(width, height, tiles, levelSeed),
+                new Player(px, py, lives, availableBombs), enemies, bombs, turn, seed);
+        for (int i = 0; i < enemyCount; i++) {
+            enemies.get(i).seedRandom(streamStates[i]);
+        }
+        state.restoreStreamCount(streams);
+        return state;
+    }
+
+    /**
+     * Writes out everything put into the buffer and empties it.
+     *
+     * @param ch  the channel to write to
+     * @param buf the buffer, in put mode
+     * @throws IOException if the channel cannot be written
+     */
+    private static void drain(WritableByteChannel ch, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) ch.write(buf);
+        buf.clear();
+    }
+
+    /**
+     * Reads from the channel until the buffer holds at least {@code n}
+     * unread bytes.
+     *
+     * @param ch  the channel to read from
+     * @param buf the buffer, in get mode
+     * @param n   the number of bytes needed, at most the buffer's capacity
+     * @throws IOException if the channel cannot be read or ends first
+     */
+    private static void fill(FileChannel ch, ByteBuffer buf, int n) throws IOException {
+        if (buf.remaining() >= n) return;
+        buf.compact();
+        while (buf.position() < n) {
+            if (ch.read(buf) < 0) throw new IOException("Save file is truncated");
+        }
+        buf.flip();
+    }
+}
@@ -1,6 +1,4 @@
 
-import java.util.Random;
-
 /**
  * Shadowling.java
  *
@@ -10,7 +8,6 @@ import java.util.Random;
  */
 public class Shadowling extends Enemy {
     private static final long serialVersionUID = 1L;
-    private Random rnd = new Random();
 
     public Shadowling(int x, int y) {
         super(x, y);
@@ -21,7 +18,7 @@ public class Shadowling extends Enemy {
     public void update(Level level, Player player) {
         // Random wandering behavior
         int dx = 0, dy = 0;
-        switch (rnd.nextInt(4)) {
+        switch (nextRandom(4)) {
             case 0: dx = 1; break;
             case 1: dx = -1; break;
             case 2: dy = 1; break;
@@ -0,0 +1,208 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * SimulationLoop.java
+ *
+ * Runs a {@link Game} on its own thread at a fixed tick rate, apart from the
+ * JavaFX Application Thread.
+ *
+ * - Key presses are queued from any thread with {@link #submit(String)} on a
+ *   lock-free queue and applied on the simulation thread as soon as it wakes,
+ *   in the order they were pressed.
+ * - Ticks fall on a fixed schedule measured from the start, so a slow tick or
+ *   frame does not shift the ones after it. After a long stall (e.g., the
+ *   machine sleeping) at most {@link #MAX_CATCH_UP} missed ticks are run.
+ * - After every input and tick, an immutable {@link GameSnapshot} is
+ *   published through an atomic reference. The renderer picks up the latest
+ *   one with {@link #latest()} whenever it draws a frame, and never blocks the
+ *   simulation or waits on it.
+ * - With an {@link Autosaver} attached, the state is handed to it after each
+ *   tick; it takes a snapshot every few turns and writes it on its own
+ *   thread, so saving never holds up a tick.
+ * - With a {@link ReplayRecorder} attached, every key applied and every tick
+ *   is recorded, and the replay is written out when the game ends, or when
+ *   the loop stops if that comes first.
+ * - Once the game is over the loop stays up without ticking, sleeping until
+ *   a key comes in, so a load (X) is still applied; the ticks pick up again
+ *   on a fresh schedule from the loaded state.
+ *
+ * Only the simulation thread touches the game once the loop is started.
+ *
+ */
+public class SimulationLoop implements Runnable {
+
+    /** Most ticks run back to back to catch up after a stall. */
+    public static final int MAX_CATCH_UP = 5;
+
+    private final Game game;
+    private final long tickNanos;
+    private final Queue<String> inputs = new ConcurrentLinkedQueue<>();
+    private final AtomicReference<GameSnapshot> snapshot = new AtomicReference<>();
+
+    private Autosaver autosaver;
+    private ReplayRecorder recorder;
+    private Path replayFile;
+
+    private volatile boolean running;
+    private volatile Thread thread;
+    private long sequence;
+
+    /**
+     * Constructs a loop for a game and publishes its starting snapshot.
+     *
+     * @param game      the game to run; not to be touched by other threads
+     *                  once the loop has started
+     * @param tickNanos the time between ticks in nanoseconds
+     */
+    public SimulationLoop(Game game, long tickNanos) {
+        if (tickNanos <= 0) throw new IllegalArgumentException("Tick length must be positive: " + tickNanos);
+        this.game = game;
+        this.tickNanos = tickNanos;
+        publish();
+    }
+
+    /**
+     * Attaches an autosaver, started and stopped along with the loop. Must be
+     * called before {@link #start()}.
+     *
+     * @param autosaver the autosaver to feed after each tick
+     */
+    public void setAutosaver(Autosaver autosaver) {
+        this.autosaver = autosaver;
+    }
+
+    /**
+     * Attaches a replay recorder for the game, which must not have ticked
+     * yet. Must be called before {@link #start()}.
+     *
+     * @param recorder the recorder to feed keys and ticks
+     * @param file     where the replay is written when the game or the loop ends
+     */
+    public void setRecorder(ReplayRecorder recorder, Path file) {
+        this.recorder = recorder;
+        this.replayFile = file;
+    }
+
+    /**
+     * Starts the simulation on a new daemon thread.
+     */
+    public void start() {
+        running = true;
+        if (autosaver != null) autosaver.start();
+        Thread t = new Thread(this, "simulation");
+        t.setDaemon(true);
+        thread = t;
+        t.start();
+    }
+
+    /**
+     * Asks the simulation thread to stop after its current tick.
+     */
+    public void stop() {
+        running = false;
+        Thread t = thread;
+        if (t != null) LockSupport.unpark(t);
+    }
+
+    /**
+     * Queues a key press for the game. Safe to call from any thread.
+     *
+     * @param input the key, as for {@link Game#processPlayerInput(String)}
+     */
+    public void submit(String input) {
+        inputs.add(input);
+        Thread t = thread;
+        if (t != null) LockSupport.unpark(t);
+    }
+
+    /** @return the most recent snapshot of the game; never {@code null} */
+    public GameSnapshot latest() {
+        return snapshot.get();
+    }
+
+    @Override
+    public void run() {
+        long next = System.nanoTime() + tickNanos;
+        boolean over = false;
+        while (running) {
+            if (drainInputs()) publish();
+
+            if (game.isGameOver()) {
+                if (!over) {
+                    over = true;
+                    writeReplay();
+                }
+                // Nothing to tick; wait for a key (a load) or stop()
+                if (inputs.isEmpty()) LockSupport.park(this);
+                continue;
+            }
+            if (over) {
+                over = false; // a save was loaded; restart the schedule from now
+                next = System.nanoTime() + tickNanos;
+            }
+
+            long now = System.nanoTime();
+            if (now - next > (MAX_CATCH_UP - 1) * tickNanos) {
+                next = now - (MAX_CATCH_UP - 1) * tickNanos; // ticks due at next .. now
+            }
+            boolean ticked = false;
+            while (now - next >= 0 && !game.isGameOver()) {
+                game.updateGameLogic();
+                if (recorder != null) recorder.tick(game.getState());
+                next += tickNanos;
+                ticked = true;
+            }
+            if (ticked) {
+                publish();
+                if (autosaver != null) autosaver.tick(game.getState());
+            }
+
+            // Sleep until the next tick, or until a key press wakes us
+            long wait = next - System.nanoTime();
+            if (wait > 0 && inputs.isEmpty()) LockSupport.parkNanos(this, wait);
+        }
+        running = false;
+        if (autosaver != null) autosaver.stop(); // writes the last snapshot handed over, then ends
+        if (!over) writeReplay();
+    }
+
+    /** Writes the replay recorded so far, if recording. */
+    private void writeReplay() {
+        if (recorder == null) return;
+        try {
+            recorder.write(replayFile);
+        } catch (IOException e) {
+            System.err.println("Could not write the replay: " + e.getMessage());
+        }
+    }
+
+    /** Applies every queued key press. @return whether there were any */
+    private boolean drainInputs() {
+        boolean any = false;
+        String input;
+        while ((input = inputs.poll()) != null) {
+            if (recorder != null) recorder.input(game.getState().getTurnCounter(), input);
+            game.processPlayerInput(input);
+            any = true;
+        }
+        return any;
+    }
+
+    private void publish() {
+        snapshot.set(new GameSnapshot(game, sequence++));
+    }
+
+    /**
+     * @param ticksPerSecond the tick rate
+     * @return the tick length in nanoseconds for that rate
+     */
+    public static long tickNanos(double ticksPerSecond) {
+        return (long) (TimeUnit.SECONDS.toNanos(1) / ticksPerSecond);
+    }
+}
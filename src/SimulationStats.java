@@ -0,0 +1,99 @@
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * SimulationStats.java
+ *
+ * Running totals over many finished games, for balancing runs.
+ *
+ * Each worker thread of {@link BatchRunner} fills its own instance and the
+ * instances are merged once at the end, so no lock is shared while games run.
+ *
+ */
+public class SimulationStats {
+    private long games;
+    private long wins;
+    private long timeouts;
+    private long turnsToVictory;
+    private long bombsUsed;
+
+    /** Games lost, by what took the last life (class simple name). */
+    private final Map<String, Long> deathsByCause = new TreeMap<>();
+
+    /**
+     * Records the outcome of one game.
+     *
+     * @param game a game that is over, or that was stopped at the turn limit
+     */
+    public void add(Game game) {
+        games++;
+        bombsUsed += game.getBombsPlaced();
+        if (!game.isGameOver()) {
+            timeouts++;
+        } else if (game.isVictory()) {
+            wins++;
+            turnsToVictory += game.getState().getTurnCounter();
+        } else {
+            Class<? extends Entity> cause = game.getLastHitBy();
+            deathsByCause.merge(cause == null ? "Unknown" : cause.getSimpleName(), 1L, Long::sum);
+        }
+    }
+
+    /**
+     * Adds another set of totals to this one.
+     *
+     * @param other the totals to merge in
+     */
+    public void combine(SimulationStats other) {
+        games += other.games;
+        wins += other.wins;
+        timeouts += other.timeouts;
+        turnsToVictory += other.turnsToVictory;
+        bombsUsed += other.bombsUsed;
+        other.deathsByCause.forEach((cause, n) -> deathsByCause.merge(cause, n, Long::sum));
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public long getWins() {
+        return wins;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    /** @return the share of games won, from 0 to 1 */
+    public double getWinRate() {
+        return games == 0 ? 0 : (double) wins / games;
+    }
+
+    /** @return the mean number of turns won games took */
+    public double getAverageTurnsToVictory() {
+        return wins == 0 ? 0 : (double) turnsToVictory / wins;
+    }
+
+    /** @return the mean number of bombs placed per game */
+    public double getAverageBombsUsed() {
+        return games == 0 ? 0 : (double) bombsUsed / games;
+    }
+
+    /** @return games lost, by the simple class name of what took the last life */
+    public Map<String, Long> getDeathsByCause() {
+        return deathsByCause;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("games: %,d  won: %,d (%.1f%%)  timed out: %,d%n",
+                games, wins, 100 * getWinRate(), timeouts));
+        sb.append(String.format("turns to victory: %.1f  bombs per game: %.2f%n",
+                getAverageTurnsToVictory(), getAverageBombsUsed()));
+        sb.append("deaths:");
+        deathsByCause.forEach((cause, n) -> sb.append(String.format(" %s %,d", cause, n)));
+        return sb.toString();
+    }
+}
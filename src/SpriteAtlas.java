@@ -0,0 +1,154 @@
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import javax.imageio.ImageIO;
+
+/**
+ * SpriteAtlas.java
+ *
+ * All game sprites packed into one image, so a frame draws every sprite from
+ * the same texture instead of switching images per entity, and the PNGs are
+ * read and decoded once, off the JavaFX thread.
+ *
+ * Each sprite is scaled to a square cell of the tile size when loaded, so
+ * drawing it is a 1:1 copy, and the cells are laid out in rows. The atlas
+ * keeps the packed pixels as non-premultiplied ARGB ints, ready both for
+ * uploading into a JavaFX image and for renderers that copy pixels directly.
+ * Only the image I/O classes of the JDK are used, so the atlas can be built
+ * and inspected without JavaFX.
+ *
+ * Sprites are looked up by name, e.g. {@code "wraith"} for
+ * {@code /resources_output/wraith.png}. A sprite whose file is missing has no
+ * region, and callers fall back to drawing shapes.
+ *
+ */
+public final class SpriteAtlas {
+
+    /** Folder on the class path holding the sprite PNGs. */
+    public static final String FOLDER = "/resources_output/";
+
+    /**
+     * The place of one sprite inside the atlas, in pixels.
+     */
+    public static final class Region {
+        public final int x;
+        public final int y;
+        public final int width;
+        public final int height;
+
+        Region(int x, int y, int width, int height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+    private final Map<String, Region> regions;
+
+    private SpriteAtlas(int width, int height, int[] pixels, Map<String, Region> regions) {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+        this.regions = Collections.unmodifiableMap(regions);
+    }
+
+    /**
+     * Starts loading an atlas on a background thread.
+     *
+     * @param cell  the side of each sprite in the atlas, in pixels
+     * @param names the sprite names, in atlas order
+     * @return a future completed with the atlas, or exceptionally if a
+     *         sprite file could not be read
+     */
+    public static CompletableFuture<SpriteAtlas> loadAsync(int cell, String... names) {
+        CompletableFuture<SpriteAtlas> ready = new CompletableFuture<>();
+        Thread t = new Thread(() -> {
+            try {
+                ready.complete(load(cell, names));
+            } catch (Throwable e) {
+                ready.completeExceptionally(e);
+            }
+        }, "asset-loader");
+        t.setDaemon(true);
+        t.start();
+        return ready;
+    }
+
+    /**
+     * Reads, scales and packs sprites into an atlas on the calling thread.
+     * Names with no file are left out.
+     *
+     * @param cell  the side of each sprite in the atlas, in pixels
+     * @param names the sprite names, in atlas order
+     * @return the atlas
+     * @throws IOException if a sprite file exists but cannot be decoded
+     */
+    public static SpriteAtlas load(int cell, String... names) throws IOException {
+        Map<String, BufferedImage> images = new LinkedHashMap<>();
+        for (String name : names) {
+            try (InputStream in = SpriteAtlas.class.getResourceAsStream(FOLDER + name + ".png")) {
+                if (in == null) continue;
+                BufferedImage img = ImageIO.read(in);
+                if (img == null) throw new IOException("Not a readable image: " + name + ".png");
+                images.put(name, img);
+            }
+        }
+
+        int columns = Math.max(1, (int) Math.ceil(Math.sqrt(images.size())));
+        int rows = Math.max(1, (images.size() + columns - 1) / columns);
+        int width = columns * cell, height = rows * cell;
+        BufferedImage sheet = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = sheet.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        Map<String, Region> regions = new LinkedHashMap<>();
+        int i = 0;
+        for (Map.Entry<String, BufferedImage> e : images.entrySet()) {
+            int x = (i % columns) * cell, y = (i / columns) * cell;
+            g.drawImage(e.getValue(), x, y, cell, cell, null);
+            regions.put(e.getKey(), new Region(x, y, cell, cell));
+            i++;
+        }
+        g.dispose();
+
+        int[] pixels = sheet.getRGB(0, 0, width, height, null, 0, width);
+        return new SpriteAtlas(width, height, pixels, regions);
+    }
+
+    /**
+     * @param name the sprite name
+     * @return the sprite's place in the atlas, or {@code null} if it was not loaded
+     */
+    public Region get(String name) {
+        return regions.get(name);
+    }
+
+    /** @return the width of the atlas in pixels */
+    public int getWidth() {
+        return width;
+    }
+
+    /** @return the height of the atlas in pixels */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the packed pixels, row-major, as non-premultiplied ARGB. The array
+     * is shared, not copied, and must not be modified.
+     *
+     * @return the atlas pixels
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+}
@@ -0,0 +1,207 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * StateSnapshot.java
+ *
+ * An immutable, consistent view of a {@link GameState} frozen at one moment,
+ * taken with {@link GameState#snapshot()}. Renderers, autosave, replays and
+ * spectators on other threads can read it freely while the game goes on.
+ *
+ * Snapshots share structure with the one before them: the tiles come from a
+ * {@link TileSnapshot} that only copies changed chunks, and the enemies and
+ * bombs from {@link EntityGrid}s that only refreeze the buckets an entity
+ * left or entered, as logged by the {@link OccupancyIndex}. The cost of a
+ * snapshot therefore follows what changed, not the size of the map or the
+ * number of entities.
+ *
+ * A snapshot taken with {@link GameState#snapshotForSave()} also records the
+ * enemies and bombs in list order, and the state of every enemy's random
+ * stream, which changes every tick, so that {@link SaveFile} can write the
+ * snapshot as a save that resumes exactly. Those are copied in full.
+ *
+ */
+public final class StateSnapshot {
+
+    private final int turn;
+    private final long seed;
+    private final long levelSeed;
+    private final long streamCount;
+    private final int lives;
+    private final int availableBombs;
+    private final TileSnapshot tiles;
+    private final EntitySnapshot player;
+
+    /** The enemies and bombs in list order; {@code null} unless taken for saving. */
+    private final List<EntitySnapshot> enemies;
+    private final List<EntitySnapshot> bombs;
+
+    /** Spatial indexes over {@link #enemies} and {@link #bombs}. */
+    private final EntityGrid enemyGrid;
+    private final EntityGrid bombGrid;
+
+    /** Cells of blasts still burning, as x, y pairs. */
+    private final int[] blast;
+
+    /** Random stream state of each enemy, in list order; {@code null} unless taken for saving. */
+    private final long[] randomStates;
+
+    /**
+     * Freezes a state. Called by {@link GameState#snapshot()} on the thread
+     * that updates the game.
+     *
+     * @param state    the state to freeze
+     * @param tiles    the frozen tiles
+     * @param previous the last snapshot of the same state, with the
+     *                 occupancy change log running from it, or {@code null}
+     * @param random   whether to record the entity lists and the enemies'
+     *                 random streams
+     */
+    StateSnapshot(GameState state, TileSnapshot tiles, StateSnapshot previous, boolean random) {
+        this.turn = state.getTurnCounter();
+        this.seed = state.getSeed();
+        this.levelSeed = state.getLevel().getSeed();
+        this.streamCount = state.getStreamCount();
+        this.lives = state.getPlayer().getLives();
+        this.availableBombs = state.getPlayer().getAvailableBombs();
+        this.tiles = tiles;
+        this.player = EntitySnapshot.of(state.getPlayer());
+        if (previous == null) {
+            this.enemyGrid = EntityGrid.of(state.getEnemies());
+            this.bombGrid = EntityGrid.of(state.getBombs());
+        } else {
+            this.enemyGrid = previous.enemyGrid.update(state.getOccupancy(), Enemy.class);
+            this.bombGrid = previous.bombGrid.update(state.getOccupancy(), Bomb.class);
+        }
+        if (previous != null && previous.turn == turn) {
+            this.blast = previous.blast; // blasts only change when a tick runs
+        } else {
+            int cells = 0;
+            for (BlastBuffer b : state.getBurning()) cells += b.size();
+            int[] xy = new int[cells * 2];
+            int k = 0;
+            for (BlastBuffer b : state.getBurning()) {
+                for (int i = 0; i < b.size(); i++) {
+                    xy[k++] = b.x(i);
+                    xy[k++] = b.y(i);
+                }
+            }
+            this.blast = xy;
+        }
+        if (random) {
+            List<Enemy> live = state.getEnemies();
+            enemies = freeze(live);
+            bombs = freeze(state.getBombs());
+            randomStates = new long[live.size()];
+            for (int i = 0; i < randomStates.length; i++) {
+                randomStates[i] = live.get(i).getRandomState();
+            }
+        } else {
+            enemies = null;
+            bombs = null;
+            randomStates = null;
+        }
+    }
+
+    private static List<EntitySnapshot> freeze(List<? extends Entity> entities) {
+        EntitySnapshot[] out = new EntitySnapshot[entities.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = EntitySnapshot.of(entities.get(i));
+        }
+        return Collections.unmodifiableList(Arrays.asList(out));
+    }
+
+    public int getTurn() {
+        return turn;
+    }
+
+    /** @return the seed of the game's random streams */
+    public long getSeed() {
+        return seed;
+    }
+
+    /** @return the seed the level layout was generated from */
+    public long getLevelSeed() {
+        return levelSeed;
+    }
+
+    /** @return the number of random streams the game had handed out */
+    public long getStreamCount() {
+        return streamCount;
+    }
+
+    /** @return whether the enemies' random streams were recorded, i.e. the snapshot can be saved */
+    public boolean hasRandomStates() {
+        return randomStates != null;
+    }
+
+    /**
+     * @param i the enemy's index in {@link #getEnemies()}
+     * @return the state of that enemy's random stream
+     * @throws IllegalStateException if the snapshot was not taken for saving
+     */
+    public long getRandomState(int i) {
+        if (randomStates == null) throw new IllegalStateException("Snapshot was not taken for saving");
+        return randomStates[i];
+    }
+
+    public int getLives() {
+        return lives;
+    }
+
+    public int getAvailableBombs() {
+        return availableBombs;
+    }
+
+    public TileSnapshot getTiles() {
+        return tiles;
+    }
+
+    public EntitySnapshot getPlayer() {
+        return player;
+    }
+
+    /**
+     * @return the enemies alive, in update order; unmodifiable
+     * @throws IllegalStateException if the snapshot was not taken for saving;
+     *         use {@link #getEnemyGrid()}
+     */
+    public List<EntitySnapshot> getEnemies() {
+        if (enemies == null) throw new IllegalStateException("Snapshot was not taken for saving");
+        return enemies;
+    }
+
+    /**
+     * @return the bombs on the map, in list order; unmodifiable
+     * @throws IllegalStateException if the snapshot was not taken for saving;
+     *         use {@link #getBombGrid()}
+     */
+    public List<EntitySnapshot> getBombs() {
+        if (bombs == null) throw new IllegalStateException("Snapshot was not taken for saving");
+        return bombs;
+    }
+
+    /** @return the enemies by position, for finding those in a region */
+    public EntityGrid getEnemyGrid() {
+        return enemyGrid;
+    }
+
+    /** @return the bombs by position, for finding those in a region */
+    public EntityGrid getBombGrid() {
+        return bombGrid;
+    }
+
+    /** @return the number of cells of blasts still burning */
+    public int getBlastCount() {
+        return blast.length / 2;
+    }
+
+    public int getBlastX(int i) {
+        return blast[2 * i];
+    }
+
+    public int getBlastY(int i) {
+        return blast[2 * i + 1];
+    }
+}
@@ -11,9 +11,9 @@ import java.io.Serializable;
  *
  * <p>In MCO2, {@code Tile} implements {@link Serializable} to allow
  * game levels to be saved and reloaded for persistence.
- * The class remains lightweight and immutable in purpose,
- * primarily used by {@link Level} to construct and manage
- * the map grid.</p>
+ * The class is lightweight and immutable: {@link Level} stores
+ * only the tile type per cell and hands out the shared instance
+ * from {@link #of(Type)} for each type.</p>
  *
  */
 public class Tile implements Serializable {
@@ -29,8 +29,17 @@ public class Tile implements Serializable {
      */
     public enum Type { FLOOR, SOFT_WALL, HARD_WALL, EXIT }
 
-    /** The current type of this tile. */
-    private Type type;
+    /** Shared instances, one per {@link Type}, indexed by ordinal. */
+    private static final Tile[] FLYWEIGHTS = new Tile[Type.values().length];
+
+    static {
+        for (Type t : Type.values()) {
+            FLYWEIGHTS[t.ordinal()] = new Tile(t);
+        }
+    }
+
+    /** The type of this tile. */
+    private final Type type;
 
     /**
      * Constructs a {@code Tile} with the given {@link Type}.
@@ -42,21 +51,22 @@ public class Tile implements Serializable {
     }
 
     /**
-     * Retrieves the {@link Type} of this tile.
+     * Returns the shared {@code Tile} for the given {@link Type}.
      *
-     * @return the type of this tile
+     * @param type the type of the tile
+     * @return the flyweight tile of that type
      */
-    public Type getType() {
-        return type;
+    public static Tile of(Type type) {
+        return FLYWEIGHTS[type.ordinal()];
     }
 
     /**
-     * Updates this tile’s {@link Type} (e.g., when a soft wall is destroyed).
+     * Retrieves the {@link Type} of this tile.
      *
-     * @param type the new tile type to assign
+     * @return the type of this tile
      */
-    public void setType(Type type) {
-        this.type = type;
+    public Type getType() {
+        return type;
     }
 
     /**
@@ -0,0 +1,296 @@
+import java.util.Arrays;
+
+/**
+ * TileRasterizer.java
+ *
+ * Draws the camera's view of a {@link StateSnapshot} straight into an array of
+ * ARGB pixels, with no drawing calls per tile or entity. It is the core of the
+ * pixel-buffer render mode, where the array backs a JavaFX {@code PixelBuffer}
+ * that the screen reads without a copy; it needs no JavaFX itself, so it can
+ * be run and timed headless.
+ *
+ * Tiles are copied from one pre-built tile-sized image per {@link Tile.Type},
+ * and sprites from a {@link SpriteAtlas} (falling back to flat squares for
+ * sprites the atlas lacks), blended over the tile. Each frame only repaints
+ * the view cells that can have changed: tiles that changed since the last
+ * frame, cells covered by an entity or blast last frame, and cells covered
+ * now. The whole view is repainted only on the first frame and after the
+ * camera scrolls. The bounding rectangle of the repainted cells is kept for
+ * the screen to update.
+ *
+ * Every pixel written is opaque, so the buffer reads the same as
+ * premultiplied ARGB.
+ *
+ */
+public class TileRasterizer {
+
+    private static final int ORANGE = 0xFFFFA500;
+    private static final int CYAN = 0xFF00FFFF;
+    private static final int RED = 0xFFFF0000;
+    private static final int ORANGE_RED = 0xFFFF4500;
+    private static final int PURPLE = 0xFF800080;
+    private static final int BLACK = 0xFF000000;
+
+    private final int columns;
+    private final int rows;
+    private final int tileSize;
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+    private final SpriteAtlas atlas;
+
+    /** One tile-sized image per {@link Tile.Type}, by ordinal. */
+    private final int[][] tileImages;
+
+    /** Frame number each view cell was last marked for repaint in. */
+    private final int[] marked;
+    private int frame;
+
+    /** View cells repainted this frame, and those an entity or blast covered last frame. */
+    private int[] dirty;
+    private int dirtyCount;
+    private int[] covered;
+    private int coveredCount;
+
+    /** The tiles painted last frame and the camera position they were painted at. */
+    private TileSnapshot drawnTiles;
+    private int drawnX = -1;
+    private int drawnY = -1;
+
+    /** Bounding box of the last frame's repaint, in pixels. */
+    private int dirtyX0, dirtyY0, dirtyX1, dirtyY1;
+
+    /**
+     * Constructs a rasterizer for a view of a given size.
+     *
+     * @param columns  tiles across the view
+     * @param rows     tiles down the view
+     * @param tileSize the side of a tile in pixels
+     * @param atlas    the sprites, or {@code null} to draw shapes only
+     */
+    public TileRasterizer(int columns, int rows, int tileSize, SpriteAtlas atlas) {
+        this.columns = columns;
+        this.rows = rows;
+        this.tileSize = tileSize;
+        this.width = columns * tileSize;
+        this.height = rows * tileSize;
+        this.pixels = new int[width * height];
+        this.atlas = atlas;
+        this.marked = new int[columns * rows];
+        this.dirty = new int[columns * rows];
+        this.covered = new int[columns * rows];
+        this.tileImages = new int[Tile.Type.values().length][];
+        tileImages[Tile.Type.FLOOR.ordinal()] = solidTile(0xFFD3D3D3, 0);
+        tileImages[Tile.Type.SOFT_WALL.ordinal()] = solidTile(0xFF8B4513, BLACK);
+        tileImages[Tile.Type.HARD_WALL.ordinal()] = solidTile(0xFFA9A9A9, 0);
+        tileImages[Tile.Type.EXIT.ordinal()] = solidTile(0xFFFFD700, 0);
+    }
+
+    /**
+     * Draws a frame. The camera must cover at most this rasterizer's columns
+     * and rows.
+     *
+     * @param state  the state to draw
+     * @param camera the part of the level to draw
+     */
+    public void render(StateSnapshot state, Camera camera) {
+        frame++;
+        dirtyCount = 0;
+        int cx = camera.getX(), cy = camera.getY();
+        int cx1 = cx + camera.getColumns(), cy1 = cy + camera.getRows();
+        TileSnapshot tiles = state.getTiles();
+
+        // 1. Cells to repaint
+        if (drawnTiles == null || cx != drawnX || cy != drawnY) {
+            for (int y = cy; y < cy1; y++) {
+                for (int x = cx; x < cx1; x++) mark(x - cx, y - cy);
+            }
+        } else {
+            if (tiles != drawnTiles) {
+                tiles.forEachChangedCell(drawnTiles, (x, y, type) -> {
+                    if (camera.contains(x, y)) mark(x - cx, y - cy);
+                });
+            }
+            for (int i = 0; i < coveredCount; i++) mark(covered[i] % columns, covered[i] / columns);
+        }
+        coveredCount = 0;
+        for (int i = 0; i < state.getBlastCount(); i++) {
+            if (camera.contains(state.getBlastX(i), state.getBlastY(i))) {
+                cover(state.getBlastX(i) - cx, state.getBlastY(i) - cy);
+            }
+        }
+        state.getBombGrid().forEachIn(cx, cy, cx1, cy1, b -> cover(b.getX() - cx, b.getY() - cy));
+        state.getEnemyGrid().forEachIn(cx, cy, cx1, cy1, e -> cover(e.getX() - cx, e.getY() - cy));
+        EntitySnapshot player = state.getPlayer();
+        if (camera.contains(player.getX(), player.getY())) cover(player.getX() - cx, player.getY() - cy);
+
+        // 2. Tiles under every repainted cell, then what stands on them, back to front
+        for (int i = 0; i < dirtyCount; i++) {
+            int vx = dirty[i] % columns, vy = dirty[i] / columns;
+            copyTile(tileImages[tiles.getType(vx + cx, vy + cy).ordinal()], vx, vy);
+        }
+        for (int i = 0; i < state.getBlastCount(); i++) {
+            if (camera.contains(state.getBlastX(i), state.getBlastY(i))) {
+                fillInset(state.getBlastX(i) - cx, state.getBlastY(i) - cy, 2, ORANGE);
+            }
+        }
+        state.getBombGrid().forEachIn(cx, cy, cx1, cy1, b -> drawSprite("bomb", b.getX() - cx, b.getY() - cy, BLACK));
+        state.getEnemyGrid().forEachIn(cx, cy, cx1, cy1, e -> {
+            char logo = e.getLogo();
+            if (logo == 'C') drawSprite("charger", e.getX() - cx, e.getY() - cy, ORANGE_RED);
+            else if (logo == 'W') drawSprite("wraith", e.getX() - cx, e.getY() - cy, PURPLE);
+            else drawSprite("shadowling", e.getX() - cx, e.getY() - cy, RED);
+        });
+        if (camera.contains(player.getX(), player.getY())) {
+            drawSprite("player", player.getX() - cx, player.getY() - cy, CYAN);
+        }
+
+        // 3. Bounding box of the repaint
+        int minX = columns, minY = rows, maxX = -1, maxY = -1;
+        for (int i = 0; i < dirtyCount; i++) {
+            int vx = dirty[i] % columns, vy = dirty[i] / columns;
+            minX = Math.min(minX, vx);
+            minY = Math.min(minY, vy);
+            maxX = Math.max(maxX, vx);
+            maxY = Math.max(maxY, vy);
+        }
+        if (maxX < 0) {
+            dirtyX0 = dirtyY0 = dirtyX1 = dirtyY1 = 0;
+        } else {
+            dirtyX0 = minX * tileSize;
+            dirtyY0 = minY * tileSize;
+            dirtyX1 = (maxX + 1) * tileSize;
+            dirtyY1 = (maxY + 1) * tileSize;
+        }
+        drawnTiles = tiles;
+        drawnX = cx;
+        drawnY = cy;
+    }
+
+    /**
+     * Makes the next frame repaint the whole view, e.g. after the buffer's
+     * contents were lost.
+     */
+    public void invalidate() {
+        drawnTiles = null;
+    }
+
+    // ---------------- Results ----------------
+
+    /** @return the frame, row-major ARGB, {@link #getWidth()} pixels per row; shared, not copied */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** @return the number of view cells repainted in the last frame */
+    public int getDirtyCellCount() {
+        return dirtyCount;
+    }
+
+    /** @return the left edge of the last frame's repainted area, in pixels */
+    public int getDirtyX() {
+        return dirtyX0;
+    }
+
+    /** @return the top edge of the last frame's repainted area, in pixels */
+    public int getDirtyY() {
+        return dirtyY0;
+    }
+
+    /** @return the width of the last frame's repainted area in pixels; 0 if nothing changed */
+    public int getDirtyWidth() {
+        return dirtyX1 - dirtyX0;
+    }
+
+    /** @return the height of the last frame's repainted area in pixels; 0 if nothing changed */
+    public int getDirtyHeight() {
+        return dirtyY1 - dirtyY0;
+    }
+
+    // ---------------- Drawing ----------------
+
+    /** Marks a view cell for repainting once per frame. */
+    private void mark(int vx, int vy) {
+        int c = vy * columns + vx;
+        if (marked[c] == frame) return;
+        marked[c] = frame;
+        dirty[dirtyCount++] = c;
+    }
+
+    /** Marks a view cell drawn over this frame, so it is also repainted next frame. */
+    private void cover(int vx, int vy) {
+        mark(vx, vy);
+        if (coveredCount == covered.length) covered = Arrays.copyOf(covered, coveredCount * 2);
+        covered[coveredCount++] = vy * columns + vx;
+    }
+
+    private int[] solidTile(int fill, int border) {
+        int[] img = new int[tileSize * tileSize];
+        Arrays.fill(img, fill);
+        if (border != 0) {
+            for (int i = 0; i < tileSize; i++) {
+                img[i] = img[(tileSize - 1) * tileSize + i] = border;
+                img[i * tileSize] = img[i * tileSize + tileSize - 1] = border;
+            }
+        }
+        return img;
+    }
+
+    private void copyTile(int[] img, int vx, int vy) {
+        int dst = vy * tileSize * width + vx * tileSize;
+        for (int row = 0; row < tileSize; row++) {
+            System.arraycopy(img, row * tileSize, pixels, dst + row * width, tileSize);
+        }
+    }
+
+    private void fillInset(int vx, int vy, int inset, int argb) {
+        int x0 = vx * tileSize + inset, y0 = vy * tileSize + inset;
+        int side = tileSize - 2 * inset;
+        for (int row = 0; row < side; row++) {
+            int at = (y0 + row) * width + x0;
+            Arrays.fill(pixels, at, at + side, argb);
+        }
+    }
+
+    /**
+     * Blends a sprite from the atlas over a view cell, scaled to the tile
+     * size, or fills a square in the fallback colour if the atlas lacks it.
+     */
+    private void drawSprite(String name, int vx, int vy, int fallback) {
+        SpriteAtlas.Region r = atlas == null ? null : atlas.get(name);
+        if (r == null) {
+            fillInset(vx, vy, tileSize / 8, fallback);
+            return;
+        }
+        int[] src = atlas.getPixels();
+        int srcWidth = atlas.getWidth();
+        int x0 = vx * tileSize, y0 = vy * tileSize;
+        for (int row = 0; row < tileSize; row++) {
+            int srcRow = (r.y + row * r.height / tileSize) * srcWidth + r.x;
+            int at = (y0 + row) * width + x0;
+            for (int col = 0; col < tileSize; col++) {
+                int s = src[srcRow + col * r.width / tileSize];
+                int a = s >>> 24;
+                if (a == 0) continue;
+                pixels[at + col] = a == 255 ? s : blend(s, pixels[at + col], a);
+            }
+        }
+    }
+
+    /** Source-over of a non-premultiplied colour onto an opaque one. */
+    private static int blend(int src, int dst, int a) {
+        int na = 255 - a;
+        int r = (((src >> 16) & 0xFF) * a + ((dst >> 16) & 0xFF) * na) / 255;
+        int g = (((src >> 8) & 0xFF) * a + ((dst >> 8) & 0xFF) * na) / 255;
+        int b = ((src & 0xFF) * a + (dst & 0xFF) * na) / 255;
+        return 0xFF000000 | r << 16 | g << 8 | b;
+    }
+}
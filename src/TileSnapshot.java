@@ -0,0 +1,279 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * TileSnapshot.java
+ *
+ * An immutable copy of a {@link Level}'s tiles at one moment.
+ *
+ * Tiles are copied in square chunks of {@link #CHUNK} x {@link #CHUNK}
+ * cells, reached through a two-level directory of pages. A {@link Tracker}
+ * listens for tile changes and only copies the chunks that changed since its
+ * last snapshot; every other chunk, and every page with no changed chunk, is
+ * shared with the previous snapshot. Taking a snapshot therefore costs the
+ * changed chunks plus one copy of the small top-level directory, not the map.
+ *
+ * A level that can read its original tiles on any thread, such as a
+ * {@link ChunkedLevel} or a {@link MappedLevel} (see
+ * {@link Level#hasOriginalTiles()}), is not copied up front at all: a chunk
+ * that has never changed is left out of the directory, as is a page with no
+ * changed chunk, and reads of it go to the level's original tiles. Only
+ * chunks that change are ever copied, so the first snapshot of a huge map
+ * costs no more than the next one.
+ *
+ */
+public final class TileSnapshot {
+
+    /** Side of a chunk, in cells. */
+    public static final int CHUNK = 32;
+    private static final int CHUNK_BITS = 5;
+
+    /** Chunks per directory page. */
+    private static final int PAGE = 64;
+    private static final int PAGE_BITS = 6;
+
+    private static final Tile.Type[] TYPES = Tile.Type.values();
+
+    private final int width;
+    private final int height;
+    private final int chunksX;
+
+    /**
+     * Chunk data by page, then chunk within page; never modified once
+     * published. A {@code null} page or chunk still has its original tiles.
+     */
+    private final byte[][][] pages;
+
+    /** The level to read original tiles from, or {@code null} if every chunk is copied. */
+    private final Level original;
+
+    private TileSnapshot(int width, int height, int chunksX, byte[][][] pages, Level original) {
+        this.width = width;
+        this.height = height;
+        this.chunksX = chunksX;
+        this.pages = pages;
+        this.original = original;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the type a tile had when the snapshot was taken.
+     *
+     * @param x the X-coordinate of the tile
+     * @param y the Y-coordinate of the tile
+     * @return the type of the tile
+     */
+    public Tile.Type getType(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height)
+            throw new IndexOutOfBoundsException("Tile (" + x + ", " + y + ") is outside the level");
+        return TYPES[read(chunk((y >> CHUNK_BITS) * chunksX + (x >> CHUNK_BITS)), x, y)];
+    }
+
+    /**
+     * @param c the chunk index
+     * @return the copied tiles of the chunk, or {@code null} if it has its
+     *         original tiles
+     */
+    private byte[] chunk(int c) {
+        byte[][] page = pages[c >> PAGE_BITS];
+        return page == null ? null : page[c & (PAGE - 1)];
+    }
+
+    /**
+     * Reads a tile type ordinal from its chunk, or from the level's original
+     * tiles if the chunk was not copied.
+     */
+    private byte read(byte[] chunk, int x, int y) {
+        if (chunk == null) return original.readOriginal(x, y);
+        return chunk[((y & (CHUNK - 1)) << CHUNK_BITS) | (x & (CHUNK - 1))];
+    }
+
+    /**
+     * Checks whether a chunk of this snapshot and one of another are the
+     * same tiles without looking at them.
+     */
+    private boolean same(byte[] chunk, TileSnapshot other, byte[] otherChunk) {
+        return chunk == otherChunk && (chunk != null || original == other.original);
+    }
+
+    /**
+     * Copies part of a row of tile type ordinals into a buffer, a chunk row
+     * at a time, e.g. to write the snapshot to a save file.
+     *
+     * @param x     the X-coordinate of the first tile
+     * @param y     the row
+     * @param count the number of tiles to copy
+     * @param out   the buffer the ordinals are put into
+     */
+    public void readRow(int x, int y, int count, ByteBuffer out) {
+        int base = (y >> CHUNK_BITS) * chunksX;
+        int row = (y & (CHUNK - 1)) << CHUNK_BITS;
+        for (int end = x + count; x < end; ) {
+            byte[] chunk = chunk(base + (x >> CHUNK_BITS));
+            int n = Math.min(CHUNK - (x & (CHUNK - 1)), end - x);
+            if (chunk != null) {
+                out.put(chunk, row | (x & (CHUNK - 1)), n);
+            } else {
+                for (int i = 0; i < n; i++) out.put(original.readOriginal(x + i, y));
+            }
+            x += n;
+        }
+    }
+
+    /**
+     * Reports every tile whose type differs from an earlier snapshot of the
+     * same level. Chunks and pages shared with it are skipped without looking
+     * at their cells, so the cost follows the number of changed chunks, which
+     * suits redrawing only what changed.
+     *
+     * @param since an earlier snapshot, or {@code null} to report every tile
+     * @param out   told about each changed tile and its type in this snapshot
+     */
+    public void forEachChangedCell(TileSnapshot since, Level.TileListener out) {
+        boolean all = since == null || since.width != width || since.height != height;
+        int chunkCount = chunksX * ((height + CHUNK - 1) >> CHUNK_BITS);
+        for (int p = 0; p < pages.length; p++) {
+            if (!all && pages[p] == since.pages[p] && (pages[p] != null || original == since.original)) continue;
+            for (int j = 0, c = p << PAGE_BITS; j < PAGE && c < chunkCount; j++, c++) {
+                byte[] chunk = chunk(c);
+                byte[] old = all ? null : since.chunk(c);
+                if (!all && same(chunk, since, old)) continue;
+                int x0 = (c % chunksX) << CHUNK_BITS, y0 = (c / chunksX) << CHUNK_BITS;
+                int x1 = Math.min(x0 + CHUNK, width), y1 = Math.min(y0 + CHUNK, height);
+                for (int y = y0; y < y1; y++) {
+                    for (int x = x0; x < x1; x++) {
+                        byte t = read(chunk, x, y);
+                        if (all || t != since.read(old, x, y)) out.tileChanged(x, y, TYPES[t]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether two snapshots share the storage of the chunk holding a
+     * tile, i.e. the chunk was not copied between them.
+     *
+     * @param other another snapshot of the same level
+     * @param x     the X-coordinate of a tile in the chunk
+     * @param y     the Y-coordinate of a tile in the chunk
+     * @return {@code true} if the chunk is the same object in both
+     */
+    public boolean sharesChunk(TileSnapshot other, int x, int y) {
+        int c = (y >> CHUNK_BITS) * chunksX + (x >> CHUNK_BITS);
+        return same(chunk(c), other, other.chunk(c));
+    }
+
+    /**
+     * Takes snapshots of one level, copying only what changed between them.
+     * Must be used on the thread that changes the level.
+     */
+    public static final class Tracker implements Level.TileListener {
+        private final Level level;
+        private final int chunksX;
+        private final int chunkCount;
+
+        /** The last snapshot handed out, or {@code null} before the first. */
+        private TileSnapshot last;
+
+        /** The level, if unchanged chunks are read from its original tiles. */
+        private Level original;
+
+        /** Chunks changed since {@link #last}, with a flag per chunk against duplicates. */
+        private int[] dirty = new int[16];
+        private int dirtyCount;
+        private final boolean[] isDirty;
+
+        /**
+         * Constructs a tracker and starts listening for tile changes.
+         *
+         * @param level the level to snapshot
+         */
+        public Tracker(Level level) {
+            this.level = level;
+            this.chunksX = (level.getWidth() + CHUNK - 1) >> CHUNK_BITS;
+            this.chunkCount = chunksX * ((level.getHeight() + CHUNK - 1) >> CHUNK_BITS);
+            this.isDirty = new boolean[chunkCount];
+            level.addTileListener(this);
+        }
+
+        /**
+         * Stops listening for tile changes once no more snapshots are needed.
+         */
+        public void detach() {
+            level.removeTileListener(this);
+        }
+
+        @Override
+        public void tileChanged(int x, int y, Tile.Type type) {
+            int c = (y >> CHUNK_BITS) * chunksX + (x >> CHUNK_BITS);
+            if (isDirty[c]) return;
+            isDirty[c] = true;
+            if (dirtyCount == dirty.length) dirty = Arrays.copyOf(dirty, dirtyCount * 2);
+            dirty[dirtyCount++] = c;
+        }
+
+        /**
+         * Freezes the tiles as they are now. The first call copies nothing if
+         * the level keeps its original tiles, and the whole level otherwise;
+         * later calls copy only the chunks changed in between, and return the
+         * previous snapshot itself if nothing changed.
+         *
+         * @return an immutable snapshot of the tiles
+         */
+        public TileSnapshot snapshot() {
+            if (last == null) {
+                byte[][][] pages = new byte[(chunkCount + PAGE - 1) >> PAGE_BITS][][];
+                if (level.hasOriginalTiles()) {
+                    original = level;
+                } else {
+                    for (int c = 0; c < chunkCount; c++) {
+                        if (pages[c >> PAGE_BITS] == null) pages[c >> PAGE_BITS] = new byte[PAGE][];
+                        pages[c >> PAGE_BITS][c & (PAGE - 1)] = copyChunk(c);
+                    }
+                }
+                clearDirty();
+                last = new TileSnapshot(level.getWidth(), level.getHeight(), chunksX, pages, original);
+                return last;
+            }
+            if (dirtyCount == 0) return last;
+
+            byte[][][] pages = last.pages.clone();
+            for (int i = 0; i < dirtyCount; i++) {
+                int c = dirty[i], p = c >> PAGE_BITS;
+                if (pages[p] == null) pages[p] = new byte[PAGE][];
+                else if (pages[p] == last.pages[p]) pages[p] = pages[p].clone();
+                pages[p][c & (PAGE - 1)] = copyChunk(c);
+            }
+            clearDirty();
+            last = new TileSnapshot(level.getWidth(), level.getHeight(), chunksX, pages, original);
+            return last;
+        }
+
+        private void clearDirty() {
+            for (int i = 0; i < dirtyCount; i++) isDirty[dirty[i]] = false;
+            dirtyCount = 0;
+        }
+
+        /** Copies the current tiles of one chunk; cells past the level edge stay 0. */
+        private byte[] copyChunk(int c) {
+            byte[] chunk = new byte[CHUNK * CHUNK];
+            int x0 = (c % chunksX) << CHUNK_BITS, y0 = (c / chunksX) << CHUNK_BITS;
+            int x1 = Math.min(x0 + CHUNK, level.getWidth()), y1 = Math.min(y0 + CHUNK, level.getHeight());
+            for (int y = y0; y < y1; y++) {
+                int row = (y - y0) << CHUNK_BITS;
+                for (int x = x0; x < x1; x++) {
+                    chunk[row | (x - x0)] = (byte) level.getType(x, y).ordinal();
+                }
+            }
+            return chunk;
+        }
+    }
+}
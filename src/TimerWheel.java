@@ -0,0 +1,192 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * TimerWheel.java
+ *
+ * Turn-based hierarchical timing wheel for scheduling things that happen on a
+ * future turn, such as bomb detonations and explosions burning out.
+ *
+ * Three wheels of 64 slots cover the next 64, 4,096 and 262,144 turns; events
+ * further out wait in an overflow bucket. An event sits in the finest wheel
+ * whose span still contains its due turn, and drops to a finer wheel as that
+ * span comes up. Advancing one turn therefore touches only the events due on
+ * that turn plus, once every 64 turns, one slot being redistributed, no matter
+ * how many events are scheduled in total.
+ *
+ * @param <T> the type of scheduled item
+ */
+public class TimerWheel<T> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 3;
+
+    /** wheels[level][slot], each bucket created the first time it is used */
+    private final Bucket[][] wheels = new Bucket[LEVELS][SLOTS];
+
+    /** Events too far in the future for any wheel. */
+    private final Bucket overflow = new Bucket();
+
+    /** Scratch bucket used while redistributing a slot. */
+    private final Bucket moving = new Bucket();
+
+    /** The last turn whose events have been handed out. */
+    private int current;
+
+    /** Number of scheduled events. */
+    private int size;
+
+    /**
+     * Constructs an empty wheel.
+     *
+     * @param currentTurn the last turn already processed; the first
+     *                    {@link #advance} fires events due on the turn after it
+     */
+    public TimerWheel(int currentTurn) {
+        this.current = currentTurn;
+    }
+
+    /**
+     * Schedules an item. Items due on a turn that has already been processed
+     * fire on the next {@link #advance}.
+     *
+     * @param item    the item to hand out when it is due
+     * @param dueTurn the turn on which it is due
+     */
+    public void schedule(T item, int dueTurn) {
+        place(item, Math.max(dueTurn, current + 1));
+        size++;
+    }
+
+    /**
+     * Processes every turn up to and including {@code turn}, appending the items
+     * that fall due to {@code out} in due-turn order.
+     *
+     * @param turn the turn to advance to
+     * @param out  list receiving the due items
+     */
+    public void advance(int turn, List<? super T> out) {
+        while (current < turn) {
+            current++;
+            if ((current & SLOT_MASK) == 0) {
+                cascade();
+            }
+            Bucket due = wheels[0][current & SLOT_MASK];
+            if (due != null) {
+                size -= due.size;
+                due.drainTo(out);
+            }
+        }
+    }
+
+    /** @return the number of scheduled items that have not fired yet */
+    public int size() {
+        return size;
+    }
+
+    /** Removes every scheduled item. */
+    public void clear() {
+        for (Bucket[] wheel : wheels) {
+            for (Bucket b : wheel) {
+                if (b != null) b.clear();
+            }
+        }
+        overflow.clear();
+        size = 0;
+    }
+
+    /**
+     * Called when {@link #current} enters a new 64-turn block: pulls the slots
+     * that now cover the block down into the finer wheels, coarsest first.
+     */
+    private void cascade() {
+        if ((current & ((1 << (SLOT_BITS * LEVELS)) - 1)) == 0) {
+            redistribute(overflow);
+        }
+        for (int level = LEVELS - 1; level >= 1; level--) {
+            int shift = SLOT_BITS * level;
+            if ((current & ((1 << shift) - 1)) == 0) {
+                redistribute(wheels[level][(current >>> shift) & SLOT_MASK]);
+            }
+        }
+    }
+
+    /**
+     * Re-places every event of a bucket relative to the current turn.
+     */
+    @SuppressWarnings("unchecked")
+    private void redistribute(Bucket bucket) {
+        if (bucket == null || bucket.size == 0) return;
+        Bucket b = moving;
+        bucket.swapInto(b);
+        for (int i = 0; i < b.size; i++) {
+            place((T) b.items[i], b.dues[i]);
+        }
+        b.clear();
+    }
+
+    /**
+     * Puts an event in the finest wheel whose span around the current turn
+     * contains its due turn.
+     */
+    private void place(T item, int due) {
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = SLOT_BITS * (level + 1);
+            if ((due >>> shift) == (current >>> shift)) {
+                int slot = (due >>> (SLOT_BITS * level)) & SLOT_MASK;
+                Bucket b = wheels[level][slot];
+                if (b == null) wheels[level][slot] = b = new Bucket();
+                b.add(item, due);
+                return;
+            }
+        }
+        overflow.add(item, due);
+    }
+
+    /**
+     * Growable list of (item, due turn) pairs kept in parallel arrays,
+     * reused between turns so steady-state scheduling does not allocate.
+     */
+    private static final class Bucket {
+        Object[] items = new Object[4];
+        int[] dues = new int[4];
+        int size;
+
+        void add(Object item, int due) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+                dues = Arrays.copyOf(dues, size * 2);
+            }
+            items[size] = item;
+            dues[size] = due;
+            size++;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> void drainTo(List<? super T> out) {
+            for (int i = 0; i < size; i++) {
+                out.add((T) items[i]);
+            }
+            clear();
+        }
+
+        /**
+         * Moves this bucket's events into an empty bucket by exchanging storage,
+         * so a slot can be refilled while its old events are being re-placed.
+         *
+         * @param empty an empty bucket that receives the events
+         */
+        void swapInto(Bucket empty) {
+            Object[] i = items; int[] d = dues; int n = size;
+            items = empty.items; dues = empty.dues; size = 0;
+            empty.items = i; empty.dues = d; empty.size = n;
+        }
+
+        void clear() {
+            Arrays.fill(items, 0, size, null);
+            size = 0;
+        }
+    }
+
+}
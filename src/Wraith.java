@@ -3,18 +3,75 @@
 /**
  * Wraith.java
  *
- * A ghost-like enemy that moves toward the player’s position
- * using basic directional tracking.
+ * A ghost-like enemy that moves toward the player’s position.
+ * It follows the shared {@link FlowField} one step at a time, which
+ * takes it around walls; without a field it falls back to basic
+ * directional tracking.
+ *
+ * On levels too large for a field it walks a path of its own from the
+ * {@link HierarchicalPathfinder}, and only searches again once the player
+ * has moved a cluster away from where the path ends, or the path is
+ * blocked. The path is not saved, so a loaded Wraith searches afresh.
  * 
  */
 public class Wraith extends Enemy {
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Path towards the player on large levels, and the cell it was searched
+     * for. A failed search is remembered too, so an unreachable player is
+     * not searched for every turn.
+     */
+    private transient HierarchicalPathfinder.Path path;
+    private transient boolean searched;
+    private transient int goalX, goalY;
+
     public Wraith(int x, int y) {
         super(x, y);
         logo = 'W';
     }
 
+    @Override
+    public boolean chasesPlayer() {
+        return true;
+    }
+
+    @Override
+    public void update(Level level, Player player, FlowField field) {
+        int dir = field == null ? -1 : field.nextStep(getX(), getY());
+        if (dir < 0) {
+            update(level, player);
+            return;
+        }
+        move(FlowField.dx(dir), FlowField.dy(dir), level);
+    }
+
+    @Override
+    public void update(Level level, Player player, HierarchicalPathfinder finder) {
+        int px = player.getX(), py = player.getY();
+        if (!searched || Math.abs(px - goalX) + Math.abs(py - goalY) > HierarchicalPathfinder.CLUSTER_SIZE) {
+            path = finder.findPath(getX(), getY(), px, py);
+            searched = true;
+            goalX = px;
+            goalY = py;
+        }
+        int dir = path == null ? -1 : path.nextStep();
+        if (dir < 0) {
+            // at the end of the path, or blocked: search again next turn
+            if (path != null) searched = false;
+            path = null;
+            update(level, player);
+            return;
+        }
+        int x = getX(), y = getY();
+        move(FlowField.dx(dir), FlowField.dy(dir), level);
+        // blocked by a wall placed since the search
+        if (getX() == x && getY() == y) {
+            path = null;
+            searched = false;
+        }
+    }
+
     @Override
     public void update(Level level, Player player) {
         int dx = 0, dy = 0;